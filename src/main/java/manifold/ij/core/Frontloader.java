@@ -18,12 +18,20 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 public class Frontloader
 {
+  private static final String FRONTLOADS = "frontloads";
+  private static final String FRONTLOAD_EXT = ".frontload";
+
+  /** The frontload resources by the url of the frontloads directory containing them */
+  private static final Map<String, List<URL>> FRONTLOADS_BY_ROOT = new ConcurrentHashMap<>();
+
   public static void frontloadClasses( String fqn, Class<?> from )
   {
     frontloadClasses( fqn, fqn, from );
@@ -68,62 +76,71 @@ public class Frontloader
   public static List<URL> getFrontloads( ClassLoader cl, String className )
   {
     List<URL> result = new ArrayList<>();
-
-    String path = "frontloads";
-    Enumeration<URL> urls = null;
     try
     {
-      urls = cl.getResources( path );
-
-
+      Enumeration<URL> urls = cl.getResources( FRONTLOADS );
       while( urls.hasMoreElements() )
       {
         URL url = urls.nextElement();
-        String protocol = url.getProtocol();
+        // each call would otherwise enumerate all the entries of the plugin jar, list them once per jar
+        List<URL> frontloads = FRONTLOADS_BY_ROOT.computeIfAbsent( url.toExternalForm(), key -> listFrontloads( cl, url ) );
+        for( URL frontload : frontloads )
+        {
+          if( simpleNameStartsWith( frontload.getPath().replace( '\\', '/' ), className ) )
+          {
+            result.add( frontload );
+          }
+        }
+      }
+    }
+    catch( Exception e )
+    {
+      throw new RuntimeException( e );
+    }
+    return result;
+  }
+
+  private static List<URL> listFrontloads( ClassLoader cl, URL url )
+  {
+    List<URL> result = new ArrayList<>();
+    try
+    {
+      String protocol = url.getProtocol();
 
-        if( "file".equals( protocol ) )
+      if( "file".equals( protocol ) )
+      {
+        File dir = new File( url.getFile() );
+        if( dir.isDirectory() )
         {
-          File dir = new File( url.getFile() );
-          if( dir.isDirectory() )
+          File[] files = dir.listFiles( (d, name) -> name.endsWith( FRONTLOAD_EXT ) );
+          if( files != null )
           {
-            File[] files = dir.listFiles( (d, name) -> name.endsWith( ".frontload" ) );
-            if( files != null )
+            for( File f : files )
             {
-              for( File f : files )
-              {
-                String slashPath = f.getPath().replace( '\\', '/' );
-                if( simpleNameStartsWith( slashPath, className ) )
-                {
-                  result.add( f.toURI().toURL() );
-                }
-              }
+              result.add( f.toURI().toURL() );
             }
           }
         }
-        else if( "jar".equals( protocol ) )
+      }
+      else if( "jar".equals( protocol ) )
+      {
+        String jarPath = url.getPath();
+        int bangIndex = jarPath.indexOf( "!" );
+        if( bangIndex > 0 )
         {
-          String jarPath = url.getPath();
-          int bangIndex = jarPath.indexOf( "!" );
-          if( bangIndex > 0 )
+          String jarFilePath = jarPath.substring( 5, bangIndex ); // strip "file:"
+          try (JarFile jar = new JarFile( URLDecoder.decode( jarFilePath, StandardCharsets.UTF_8.name() ) ))
           {
-            String jarFilePath = jarPath.substring( 5, bangIndex ); // strip "file:"
-            try (JarFile jar = new JarFile( URLDecoder.decode( jarFilePath, StandardCharsets.UTF_8.name() ) ))
+            for( Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); )
             {
-              for( Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); )
+              JarEntry entry = e.nextElement();
+              String entryName = entry.getName();
+              if( entryName.startsWith( FRONTLOADS ) && entryName.endsWith( FRONTLOAD_EXT ) && !entry.isDirectory() )
               {
-                JarEntry entry = e.nextElement();
-                String entryName = entry.getName();
-                if( entryName.startsWith( path ) && entryName.endsWith( ".frontload" ) && !entry.isDirectory() )
+                URL resourceUrl = cl.getResource( entryName );
+                if( resourceUrl != null )
                 {
-                  URL resourceUrl = cl.getResource( entryName );
-                  if( resourceUrl != null )
-                  {
-                    String slashPath = resourceUrl.getPath().replace( '\\', '/' );
-                    if( simpleNameStartsWith( slashPath, className ) )
-                    {
-                      result.add( resourceUrl );
-                    }
-                  }
+                  result.add( resourceUrl );
                 }
               }
             }
@@ -36,7 +36,9 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -68,8 +70,15 @@ public class ManLibraryChecker
     PropertiesComponent.getInstance().setValue( MANIFOLD_SUPPRESS_VERSION_CHECK, suppress );
   }
 
+  /** Manifest reads per library jar path, a project may have hundreds of jars and the checks rerun per library change */
+  private final Map<String, JarInfo> _jarInfos;
+  /** The plugin's jars don't change during a session */
+  private final LocklessLazyVar<String> _pluginVersion;
+
   private ManLibraryChecker()
   {
+    _jarInfos = new ConcurrentHashMap<>();
+    _pluginVersion = LocklessLazyVar.make( this::findVersionFromPlugin );
   }
 
   public void warnFeatureRequiresManifold( Project project )
@@ -220,6 +229,10 @@ public class ManLibraryChecker
   }
 
   private String getVersionFromPlugin()
+  {
+    return _pluginVersion.get();
+  }
+  private String findVersionFromPlugin()
   {
     List<URL> urls = getUrls();
     for( URL url: urls )
@@ -363,44 +376,83 @@ public class ManLibraryChecker
           extension.equalsIgnoreCase( "jar" ) &&
           path.getNameWithoutExtension().contains( "manifold-" ) )
       {
-        try
+        JarInfo info = _jarInfos.get( path.getPath() );
+        if( info == null || !info.isCurrent( path ) )
         {
-          String canonicalPath = path.getCanonicalPath();
-          if( canonicalPath == null )
+          info = readJarInfo( path );
+          if( info == null )
           {
             continue;
           }
-
-          canonicalPath = canonicalPath.replace( '/', File.separatorChar );
-          File file = new File( canonicalPath );
-          if( !file.isFile() )
-          {
-            file = new File( new URL( path.getUrl() ).getFile() );
-          }
-
-          try( JarFile jarFile = new JarFile( file.getAbsoluteFile() ) )
-          {
-            Manifest manifest = jarFile.getManifest();
-            Attributes attributes = manifest.getMainAttributes();
-            String vendor = attributes.getValue( "Implementation-Vendor-Id" );
-            if( vendor != null && vendor.trim().equals( "systems.manifold" ) )
-            {
-              result.add( file.getAbsolutePath() );
-            }
-          }
-          catch( Exception e )
-          {
-            // todo: some customers get NoSuchFileException for the Jar even though it's there, must add in this case
-            e.printStackTrace();
-          }
+          _jarInfos.put( path.getPath(), info );
         }
-        catch( MalformedURLException e )
+        if( info._manifoldPath != null )
         {
-          //## todo: log
-          e.printStackTrace();
+          result.add( info._manifoldPath );
         }
       }
     }
     return result;
   }
+
+  private JarInfo readJarInfo( VirtualFile path )
+  {
+    try
+    {
+      String canonicalPath = path.getCanonicalPath();
+      if( canonicalPath == null )
+      {
+        return null;
+      }
+
+      canonicalPath = canonicalPath.replace( '/', File.separatorChar );
+      File file = new File( canonicalPath );
+      if( !file.isFile() )
+      {
+        file = new File( new URL( path.getUrl() ).getFile() );
+      }
+
+      try( JarFile jarFile = new JarFile( file.getAbsoluteFile() ) )
+      {
+        Manifest manifest = jarFile.getManifest();
+        Attributes attributes = manifest.getMainAttributes();
+        String vendor = attributes.getValue( "Implementation-Vendor-Id" );
+        boolean isManifold = vendor != null && vendor.trim().equals( "systems.manifold" );
+        return new JarInfo( path, isManifold ? file.getAbsolutePath() : null );
+      }
+      catch( Exception e )
+      {
+        // todo: some customers get NoSuchFileException for the Jar even though it's there, must add in this case
+        e.printStackTrace();
+      }
+    }
+    catch( MalformedURLException e )
+    {
+      //## todo: log
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  /**
+   * Whether a library jar is a Manifold jar, valid while the jar's VFS timestamp and length are unchanged
+   */
+  private static class JarInfo
+  {
+    private final long _timeStamp;
+    private final long _length;
+    private final String _manifoldPath;
+
+    private JarInfo( VirtualFile jar, String manifoldPath )
+    {
+      _timeStamp = jar.getTimeStamp();
+      _length = jar.getLength();
+      _manifoldPath = manifoldPath;
+    }
+
+    private boolean isCurrent( VirtualFile jar )
+    {
+      return _timeStamp == jar.getTimeStamp() && _length == jar.getLength();
+    }
+  }
 }
@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -38,6 +39,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import manifold.api.fs.IDirectory;
@@ -69,6 +71,8 @@ public class ManModule extends SimpleModule
   private final List<IDirectory> _excludedDirs;
   private URLClassLoader _typeManifoldClassLoader;
   private final LocklessLazyVar<List<ManModule>> _modulesDependingOnMe;
+  private final LocklessLazyVar<List<ManModule>> _visibleModules;
+  private final LocklessLazyVar<List<ManModule>> _dependencyClosure;
   private final LocklessLazyVar<Boolean> _isExtEnabled;
   private final LocklessLazyVar<Boolean> _isStringsEnabled;
   private final LocklessLazyVar<Boolean> _isExceptionsEnabled;
@@ -91,6 +95,8 @@ public class ManModule extends SimpleModule
         ModuleUtilCore.collectModulesDependsOn( getIjModule(), result );
         return result.stream().map( ManProject::getModule ).collect( Collectors.toList() );
       } );
+    _visibleModules = LocklessLazyVar.make( () -> collectModules( true ) );
+    _dependencyClosure = LocklessLazyVar.make( () -> collectModules( false ) );
     _isExtEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-ext-rt" ) || hasJar( "manifold-all" ) );
     _isStringsEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-strings" ) || hasJar( "manifold-all" ) );
     _isExceptionsEnabled = LocklessLazyVar.make( () -> hasJar( "manifold-exceptions" ) || hasJar( "manifold-all" ) );
@@ -148,6 +154,55 @@ public class ManModule extends SimpleModule
     _dependencies.add( dependency );
   }
 
+  /**
+   * @return This module followed by the modules whose types it resolves: its dependencies and, transitively, their
+   * exported dependencies. The order is depth-first, as dependencies are searched.
+   */
+  public List<ManModule> getVisibleModules()
+  {
+    return _visibleModules.get();
+  }
+
+  /**
+   * @return This module followed by all the modules it transitively depends on, exported or not
+   */
+  public List<ManModule> getDependencyClosure()
+  {
+    return _dependencyClosure.get();
+  }
+
+  /**
+   * Dependencies and type manifolds are final once the project's modules are defined, which is when the closures are
+   * computed for good. Module root and classpath changes define the modules anew, see {@link ManProject#reset()}.
+   */
+  void clearDependencyClosure()
+  {
+    _visibleModules.clear();
+    _dependencyClosure.clear();
+  }
+
+  private List<ManModule> collectModules( boolean visibleOnly )
+  {
+    LinkedHashSet<ManModule> result = new LinkedHashSet<>();
+    collectModules( this, visibleOnly, result );
+    return new ArrayList<>( result );
+  }
+  private void collectModules( ManModule root, boolean visibleOnly, LinkedHashSet<ManModule> result )
+  {
+    if( !result.add( this ) )
+    {
+      return;
+    }
+
+    for( Dependency d: getDependencies() )
+    {
+      if( !visibleOnly || this == root || d.isExported() )
+      {
+        ((ManModule)d.getModule()).collectModules( root, visibleOnly, result );
+      }
+    }
+  }
+
   @Override
   public IDirectory[] getExcludedPath()
   {
@@ -205,9 +260,38 @@ public class ManModule extends SimpleModule
   @Override
   public final Set<ITypeManifold> findTypeManifoldsFor( String fqn, Predicate<ITypeManifold> predicate )
   {
-    return findTypeManifoldsFor( fqn, predicate, this, new HashSet<>() );
+    Map<ManModule, Set<ITypeManifold>> found = findVisibleTypeManifolds( fqn, predicate );
+    if( found.isEmpty() )
+    {
+      // the common case, most names resolved are not manifold types
+      return Collections.emptySet();
+    }
+    return findTypeManifoldsFor( found, this, new HashSet<>() );
   }
-  private Set<ITypeManifold> findTypeManifoldsFor( String fqn, Predicate<ITypeManifold> predicate, ManModule root, HashSet<ManModule> visited )
+  /**
+   * @return The type manifolds producing {@code fqn} in each of the visible modules, the modules the search can reach.
+   * Each type manifold is asked once.
+   */
+  private Map<ManModule, Set<ITypeManifold>> findVisibleTypeManifolds( String fqn, Predicate<ITypeManifold> predicate )
+  {
+    Map<ManModule, Set<ITypeManifold>> found = Collections.emptyMap();
+    for( ManModule module: getVisibleModules() )
+    {
+      for( ITypeManifold tm: module.getTypeManifolds() )
+      {
+        if( (predicate == null || predicate.test( tm )) && tm.isType( fqn ) )
+        {
+          if( found.isEmpty() )
+          {
+            found = new HashMap<>();
+          }
+          found.computeIfAbsent( module, k -> new HashSet<>( 2 ) ).add( tm );
+        }
+      }
+    }
+    return found;
+  }
+  private Set<ITypeManifold> findTypeManifoldsFor( Map<ManModule, Set<ITypeManifold>> found, ManModule root, HashSet<ManModule> visited )
   {
     if( visited.contains( this ) )
     {
@@ -216,8 +300,9 @@ public class ManModule extends SimpleModule
     }
     visited.add( this );
 
-    Set<ITypeManifold> sps = super.findTypeManifoldsFor( fqn, predicate );
-    if( !sps.isEmpty() )
+    // the first module having type manifolds for the fqn wins
+    Set<ITypeManifold> sps = found.get( this );
+    if( sps != null )
     {
       return sps;
     }
@@ -226,7 +311,7 @@ public class ManModule extends SimpleModule
     {
       if( this == root || d.isExported() )
       {
-        sps.addAll( ((ManModule)d.getModule()).findTypeManifoldsFor( fqn, predicate, root, visited ) );
+        sps.addAll( ((ManModule)d.getModule()).findTypeManifoldsFor( found, root, visited ) );
       }
     }
     return sps;
@@ -292,14 +377,9 @@ public class ManModule extends SimpleModule
   public Set<TypeName> getChildrenOfNamespace( String packageName )
   {
     Set<TypeName> all = new HashSet<>();
-    Set<TypeName> children = super.getChildrenOfNamespace( packageName );
-    if( children != null )
-    {
-      all.addAll( children );
-    }
-    for( Dependency d : getDependencies() )
+    for( ManModule module: getDependencyClosure() )
     {
-      children = ((ManModule)d.getModule()).getChildrenOfNamespace( packageName );
+      Set<TypeName> children = module.getOwnChildrenOfNamespace( packageName );
       if( children != null )
       {
         all.addAll( children );
@@ -307,6 +387,10 @@ public class ManModule extends SimpleModule
     }
     return all;
   }
+  private Set<TypeName> getOwnChildrenOfNamespace( String packageName )
+  {
+    return super.getChildrenOfNamespace( packageName );
+  }
 
   /**
    * Override to add the type manifolds that may be in the Module's classpath.
@@ -334,42 +418,72 @@ public class ManModule extends SimpleModule
     URL[] urls = classpath.stream().map( dir -> dir.toURI().toURL() ).toArray( URL[]::new );
 
     // note this classloader is used exclusively for finding and loading type manifold services
-    ClassLoader pluginLoader = getClass().getClassLoader();
-    _typeManifoldClassLoader =
-      new URLClassLoader( urls, pluginLoader )
+    _typeManifoldClassLoader = new TypeManifoldClassLoader( urls, getClass().getClassLoader() );
+  }
+
+  /**
+   * Total hack to avoid Jar-hell with IJ's PathClassLoader, a parent loader in the chain. For example, if a project
+   * uses manifold-sql with H2, those jars must load in this URLClassLoader so manifold-sql can do its thing. However,
+   * since IJ apparently uses part of H2 internally, its PathClassLoader, being a parent loader of this loader, will
+   * load H2 classes, which are probably not from the same version of H2, etc. Therefore, non-manifold classes are
+   * delegated to the platform loader, jumping over PathClassLoader, since none of these classes should have a
+   * dependency on IJ classes. Manifold classes are delegated to the plugin's loader.
+   * <p/>
+   * Delegation is explicit per class name rather than by switching the parent loader, type manifolds load classes
+   * concurrently from background threads. Loaded classes are cached by name so repeat loads skip the delegation.
+   */
+  private static class TypeManifoldClassLoader extends URLClassLoader
+  {
+    static
+    {
+      ClassLoader.registerAsParallelCapable();
+    }
+
+    private final ClassLoader _pluginLoader;
+    private final Map<String, Class<?>> _classes;
+
+    private TypeManifoldClassLoader( URL[] urls, ClassLoader pluginLoader )
+    {
+      super( urls, pluginLoader );
+      _pluginLoader = pluginLoader;
+      _classes = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    protected Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException
+    {
+      Class<?> cls = _classes.get( name );
+      if( cls == null )
       {
-        /**
-         * Total hack to avoid Jar-hell with IJ's PathClassLoader, a parent loader in the chain. For example, if a project
-         * uses manifold-sql with H2, those jars must load in this URLClassLoader so manifold-sql can do its thing. However,
-         * since IJ apparently uses part of H2 internally, its PathClassLoader, being a parent loader of this loader, will
-         * load H2 classes, which are probably not from the same version of H2, etc. Therefore, overloading loadClass()
-         * here for non-manifold classes ensures that ij's loader won't interfere with dependencies of manifold classes.
-         */
-        @Override
-        protected Class<?> loadClass( String name, boolean resolve ) throws ClassNotFoundException
+        synchronized( getClassLoadingLock( name ) )
         {
-          try
-          {
-            if( !name.startsWith( "manifold." ) ) // if( name.startsWith( "org.h2." ) )
-            {
-              // jump over PathClassLoader to the great-grandfather since none of these classes should have a dependency on IJ classes
-              ReflectUtil.field( this, "parent" ).set( ClassLoader.getPlatformClassLoader() );
-            }
-            else
-            {
-              ReflectUtil.field( this, "parent" ).set( pluginLoader );
-            }
-            return super.loadClass( name, resolve );
-          }
-          finally
+          cls = findLoadedClass( name );
+          if( cls == null )
           {
-            if( !name.startsWith( "manifold." ) )
-            {
-              ReflectUtil.field( this, "parent" ).set( pluginLoader );
-            }
+            cls = delegate( name );
           }
+          _classes.put( name, cls );
         }
-      };
+      }
+      if( resolve )
+      {
+        resolveClass( cls );
+      }
+      return cls;
+    }
+
+    private Class<?> delegate( String name ) throws ClassNotFoundException
+    {
+      ClassLoader parent = name.startsWith( "manifold." ) ? _pluginLoader : ClassLoader.getPlatformClassLoader();
+      try
+      {
+        return parent.loadClass( name );
+      }
+      catch( ClassNotFoundException ignore )
+      {
+        return findClass( name );
+      }
+    }
   }
 
   @Override
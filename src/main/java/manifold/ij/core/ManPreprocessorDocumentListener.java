@@ -23,33 +23,52 @@ import com.intellij.codeInsight.lookup.LookupManager;
 import com.intellij.lang.Language;
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.RangeMarker;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.editor.event.DocumentListener;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.impl.event.DocumentEventImpl;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.TextRange;
-import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.impl.PsiDocumentManagerBase;
+import com.intellij.psi.impl.source.PsiFileImpl;
 import com.intellij.testFramework.LightVirtualFile;
 import com.intellij.util.Alarm;
 import com.intellij.util.FileContentUtilCore;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import manifold.ij.extensions.PreprocessorSymbolIndex;
 import org.jetbrains.annotations.NotNull;
-import org.jspecify.annotations.NonNull;
 
 /**
  * For Preprocessor.
  * <p/>
  * Listens for changes to Java source files where a {@code #define} or {@code #undef} is involved and reparses the
- * file so the preprocessor can take into account the changes.
+ * file so the preprocessor can take into account the changes. The file reparses only if a symbol's definition
+ * changed and a {@code #if} or {@code #elif} below the change references it. The reparse diffs the new tree against
+ * the old one, so only the code whose tokens changed is replaced, and editors relex only from the change to the end
+ * of the last {@code #if} block referencing the symbol.
  */
 public class ManPreprocessorDocumentListener implements DocumentListener
 {
+  private static final String DEFINE = "#define";
+  private static final String UNDEF = "#undef";
+  private static final String IF = "#if";
+  private static final String ELIF = "#elif";
+  private static final String ENDIF = "#endif";
+
   private final Project _project;
   private final Alarm _alarm;
-  private boolean _reparse;
+  private Set<String> _priorDirectives;
 
   public ManPreprocessorDocumentListener( Project project )
   {
@@ -60,60 +79,111 @@ public class ManPreprocessorDocumentListener implements DocumentListener
   @Override
   public void beforeDocumentChange( @NotNull DocumentEvent event )
   {
-    if( shouldReparse( event ) )
-    {
-      _reparse = true;
-    }
+    _priorDirectives = isJavaSource( event.getDocument() )
+      ? findDirectives( event.getDocument(), event.getOffset(), event.getOffset() + event.getOldLength() )
+      : null;
   }
 
   @Override
   public void documentChanged( @NotNull DocumentEvent event )
   {
-    if( _reparse || shouldReparse( event ) )
+    Set<String> priorDirectives = _priorDirectives;
+    _priorDirectives = null;
+    if( priorDirectives == null || _project.isDisposed() )
+    {
+      return;
+    }
+
+    Document doc = event.getDocument();
+    int end = event.getOffset() + event.getNewLength();
+    Set<String> symbols = changedSymbols( priorDirectives, findDirectives( doc, event.getOffset(), end ) );
+    if( symbols.isEmpty() )
+    {
+      return;
+    }
+    int affectedEnd = findAffectedEnd( doc, end, symbols );
+    if( affectedEnd >= 0 )
     {
-      reparse( event );
+      int affectedStart = doc.getLineStartOffset( doc.getLineNumber( event.getOffset() ) );
+      reparse( doc, doc.createRangeMarker( affectedStart, affectedEnd ) );
     }
-    _reparse = false;
   }
 
-  private void reparse( @NonNull DocumentEvent event )
+  /**
+   * @param affected From the changed directives to the end of the last {@code #if} referencing a changed symbol,
+   *                 editors relex this range after the reparse
+   */
+  private void reparse( @NotNull Document document, @NotNull RangeMarker affected )
   {
-    _alarm.cancelAllRequests();
-    _alarm.addRequest( () -> {
-      // Avoid interfering with active completion
-      if( LookupManager.getInstance( _project ).getActiveLookup() != null )
-      {
-        reparse( event );
-        return;
-      }
+    PsiDocumentManager psiDocumentManager = PsiDocumentManager.getInstance( _project );
+    psiDocumentManager.performForCommittedDocument( document, () ->
+      ApplicationManager.getApplication().invokeLater( () -> {
+        // Avoid interfering with active completion
+        if( LookupManager.getInstance( _project ).getActiveLookup() != null )
+        {
+          _alarm.cancelAllRequests();
+          _alarm.addRequest( () -> reparse( document, affected ), 150 );
+          return;
+        }
 
-      PsiDocumentManager.getInstance( _project ).commitDocument( event.getDocument() );
-      ApplicationManager.getApplication().runReadAction( () -> {
-        VirtualFile vfile = FileDocumentManager.getInstance().getFile( event.getDocument() );
-        FileContentUtilCore.reparseFiles( vfile );
-      } );
-    }, 150 );
+        PsiFile psiFile = psiDocumentManager.getPsiFile( document );
+        if( psiFile == null || !psiFile.isValid() )
+        {
+          affected.dispose();
+          return;
+        }
+        if( psiDocumentManager instanceof PsiDocumentManagerBase && psiFile instanceof PsiFileImpl )
+        {
+          // reparse in place, unlike reparseFiles() the file's psi is not discarded and only the changes are applied
+          ApplicationManager.getApplication().runWriteAction( () ->
+            ((PsiDocumentManagerBase)psiDocumentManager).reparseFileFromText( (PsiFileImpl)psiFile ) );
+          // the psi is current, but editor highlighters relex only near the edit, the #if regions below it are stale
+          relexEditors( document, affected );
+        }
+        else
+        {
+          FileContentUtilCore.reparseFiles( psiFile.getVirtualFile() );
+        }
+        affected.dispose();
+      }, ModalityState.nonModal(), _project.getDisposed() ) );
   }
 
-  private boolean shouldReparse( DocumentEvent event )
+  /**
+   * Relexes the affected range as if it were replaced with itself, a highlighter relexes a change until its lexer
+   * state matches the old tokens again, so only the affected range and the tokens following it are re-highlighted
+   */
+  private void relexEditors( Document document, RangeMarker affected )
   {
-    if( _project.isDisposed() )
+    if( !affected.isValid() )
     {
-      return false;
+      return;
+    }
+    int start = affected.getStartOffset();
+    CharSequence text = document.getImmutableCharSequence().subSequence( start, affected.getEndOffset() );
+    DocumentEvent event = new DocumentEventImpl( document, start, text, text, document.getModificationStamp(), false,
+      start, text.length(), start );
+    for( Editor editor: EditorFactory.getInstance().getEditors( document, _project ) )
+    {
+      if( editor instanceof EditorEx && !editor.isDisposed() )
+      {
+        ((EditorEx)editor).getHighlighter().documentChanged( event );
+      }
     }
+  }
 
-    Document doc = event.getDocument();
-    if( getLanguage( doc ) != JavaLanguage.INSTANCE )
+  private boolean isJavaSource( Document doc )
+  {
+    if( _project.isDisposed() )
     {
       return false;
     }
 
-    if( FileDocumentManager.getInstance().getFile( doc ) instanceof LightVirtualFile )
+    if( getLanguage( doc ) != JavaLanguage.INSTANCE )
     {
       return false;
     }
 
-    return definitionChanged( event );
+    return !(FileDocumentManager.getInstance().getFile( doc ) instanceof LightVirtualFile);
   }
 
   private Language getLanguage( Document document )
@@ -136,17 +206,145 @@ public class ManPreprocessorDocumentListener implements DocumentListener
     return psiFile.getLanguage();
   }
 
-  private boolean definitionChanged( @NotNull DocumentEvent event )
+  /**
+   * @return The {@code #define} and {@code #undef} directives on the lines spanning {@code start} to {@code end},
+   * normalized as the directive followed by the symbol e.g., {@code "#define FOO"}
+   */
+  private static Set<String> findDirectives( Document doc, int start, int end )
   {
-    // todo: handle multiline changes, also check event.getFragement() for '#define' etc.
+    Set<String> directives = new HashSet<>();
+    CharSequence text = doc.getCharsSequence();
+    int lastLine = doc.getLineNumber( Math.min( end, doc.getTextLength() ) );
+    for( int line = doc.getLineNumber( start ); line <= lastLine; line++ )
+    {
+      int lineStart = doc.getLineStartOffset( line );
+      int lineEnd = doc.getLineEndOffset( line );
+      String lineText = text.subSequence( lineStart, lineEnd ).toString().trim();
+      String directive = lineText.startsWith( DEFINE ) ? DEFINE : lineText.startsWith( UNDEF ) ? UNDEF : null;
+      if( directive != null )
+      {
+        String symbol = parseSymbol( lineText, directive.length() );
+        if( symbol != null )
+        {
+          directives.add( directive + ' ' + symbol );
+        }
+      }
+    }
+    return directives;
+  }
 
-    int offset = event.getOffset();
-    Document doc = event.getDocument();
-    int line = doc.getLineNumber( offset );
-    int lineStart = doc.getLineStartOffset( line );
-    int lineEnd = doc.getLineEndOffset( line );
-    String lineText = doc.getText( new TextRange( lineStart, lineEnd ) );
-    return StringUtil.contains( lineText, "#define" ) ||
-           StringUtil.contains( lineText, "#undef" );
+  private static String parseSymbol( String directiveLine, int start )
+  {
+    int i = start;
+    if( i >= directiveLine.length() || !Character.isWhitespace( directiveLine.charAt( i ) ) )
+    {
+      return null;
+    }
+    while( i < directiveLine.length() && Character.isWhitespace( directiveLine.charAt( i ) ) )
+    {
+      i++;
+    }
+    int symbolStart = i;
+    while( i < directiveLine.length() &&
+      (Character.isJavaIdentifierPart( directiveLine.charAt( i ) ) || directiveLine.charAt( i ) == '.') )
+    {
+      i++;
+    }
+    return i > symbolStart ? directiveLine.substring( symbolStart, i ) : null;
+  }
+
+  /**
+   * @return The symbols of directives added or removed by the change
+   */
+  private static Set<String> changedSymbols( Set<String> priorDirectives, Set<String> directives )
+  {
+    Set<String> symbols = new HashSet<>();
+    for( String directive: priorDirectives )
+    {
+      if( !directives.contains( directive ) )
+      {
+        symbols.add( directive.substring( directive.indexOf( ' ' ) + 1 ) );
+      }
+    }
+    for( String directive: directives )
+    {
+      if( !priorDirectives.contains( directive ) )
+      {
+        symbols.add( directive.substring( directive.indexOf( ' ' ) + 1 ) );
+      }
+    }
+    return symbols;
+  }
+
+  /**
+   * A definition affects only the conditions following it, see {@link PreprocessorSymbolIndex}
+   *
+   * @return The end of the last {@code #if} block below {@code offset} with a condition referencing one of
+   * {@code symbols}, or -1 if none does
+   */
+  private static int findAffectedEnd( Document doc, int offset, Set<String> symbols )
+  {
+    CharSequence text = doc.getCharsSequence();
+    int affectedEnd = -1;
+    // for each enclosing #if, whether a condition of its block references a symbol
+    Deque<Boolean> blocks = new ArrayDeque<>();
+    // whether an #elif of a block beginning above offset references a symbol
+    boolean enclosing = false;
+    int lastLine = doc.getLineCount() - 1;
+    for( int line = doc.getLineNumber( Math.min( offset, doc.getTextLength() ) ) + 1; line <= lastLine; line++ )
+    {
+      int lineStart = doc.getLineStartOffset( line );
+      int lineEnd = doc.getLineEndOffset( line );
+      String lineText = text.subSequence( lineStart, lineEnd ).toString().trim();
+      if( isDirective( lineText, IF ) )
+      {
+        blocks.push( references( lineText, symbols ) );
+      }
+      else if( isDirective( lineText, ELIF ) )
+      {
+        if( references( lineText, symbols ) )
+        {
+          if( blocks.isEmpty() )
+          {
+            enclosing = true;
+          }
+          else
+          {
+            blocks.pop();
+            blocks.push( true );
+          }
+        }
+      }
+      else if( isDirective( lineText, ENDIF ) )
+      {
+        boolean referenced;
+        if( blocks.isEmpty() )
+        {
+          referenced = enclosing;
+          enclosing = false;
+        }
+        else
+        {
+          referenced = blocks.pop();
+        }
+        if( referenced )
+        {
+          affectedEnd = lineEnd;
+        }
+      }
+    }
+    // an unterminated block extends to the end of the file
+    return enclosing || blocks.contains( true ) ? doc.getTextLength() : affectedEnd;
+  }
+
+  private static boolean isDirective( String lineText, String directive )
+  {
+    return lineText.startsWith( directive ) &&
+      (lineText.length() == directive.length() || !Character.isJavaIdentifierPart( lineText.charAt( directive.length() ) ));
+  }
+
+  private static boolean references( String conditionLine, Set<String> symbols )
+  {
+    return !PreprocessorSymbolIndex.visitConditionSymbols( conditionLine, 0, symbol -> !symbols.contains( symbol ) );
   }
 }
@@ -23,9 +23,11 @@ import com.intellij.AppTopics;
 import com.intellij.ProjectTopics;
 import com.intellij.compiler.CompilerConfiguration;
 import com.intellij.compiler.impl.javaCompiler.javac.JavacConfiguration;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.compiler.CompilerPaths;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.fileEditor.*;
 import com.intellij.openapi.fileEditor.ex.FileEditorWithProvider;
@@ -33,6 +35,8 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.module.ModuleUtil;
 import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.openapi.roots.DependencyScope;
@@ -56,6 +60,8 @@ import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -86,6 +92,7 @@ import org.jetbrains.jps.model.java.compiler.JpsJavaCompilerOptions;
  */
 public class ManProject
 {
+  private static final Logger LOG = Logger.getInstance( ManProject.class );
   private static final Map<Project, ManProject> PROJECTS = new ConcurrentWeakHashMap<>();
   private static final String JAR_INDICATOR = ".jar!";
   static final String XPLUGIN_MANIFOLD = "-Xplugin:Manifold";
@@ -96,13 +103,16 @@ public class ManProject
   private boolean _manInUse;
   private IjFileSystem _fs;
   private LockingLazyVar<Map<Module, ManModule>> _modules;
+  private LockingLazyVar<Map<Module, ModuleRoots>> _moduleRoots;
   private MessageBusConnection _projectConnection;
   private MessageBusConnection _applicationConnection;
   private MessageBusConnection _permanentProjectConnection;
   private FileModificationManager _fileModificationManager;
   private ManifoldPsiClassCache _psiClassCache;
+  private ManShortNamesIndex _shortNamesIndex;
   private LocklessLazyVar<Set<ManModule>> _rootModules;
-  private boolean _hasNamedModule;
+  private volatile boolean _hasNamedModule;
+  private volatile Map<Module, ModuleInitTiming> _moduleInitTimings = Collections.emptyMap();
 
   @SuppressWarnings("unused")
   public static Collection<ManProject> getAllProjects()
@@ -143,7 +153,7 @@ public class ManProject
 
     // The module may not yet be committed to the project
     // e.g., a new module added in Module Structure dialog, but not yet saved.
-    return manProject.defineModule( module );
+    return manProject.createModule( module, manProject.scanModuleRoots( module ) );
   }
 
   public static Module getIjModule( PsiElement element )
@@ -351,7 +361,10 @@ public class ManProject
     _host = new IjManifoldHost( this );
     _fs = new IjFileSystem( this );
     _psiClassCache = new ManifoldPsiClassCache( this );
+    _shortNamesIndex = new ManShortNamesIndex( this );
     _hasNamedModule = false;
+    _moduleRoots = LockingLazyVar.make( () -> ApplicationManager.getApplication().<Map<Module, ModuleRoots>>runReadAction(
+      () -> SlowOperationsUtil.allowSlowOperation( "manifold.generic", this::scanModuleRoots ) ) );
     _modules = LockingLazyVar.make( () -> ApplicationManager.getApplication().<Map<Module, ManModule>>runReadAction(
       () -> SlowOperationsUtil.allowSlowOperation( "manifold.generic", this::defineModules ) ) );
     _rootModules = assignRootModuleLazy();
@@ -457,7 +470,17 @@ public class ManProject
 
   public Map<Module, ManModule> getModules()
   {
-    return _modules == null ? null : _modules.get();
+    LockingLazyVar<Map<Module, ManModule>> modules = _modules;
+    if( modules == null )
+    {
+      return null;
+    }
+    if( !modules.isLoaded() )
+    {
+      // scan the module roots on the worker pool before taking the lock of _modules, see defineModules()
+      _moduleRoots.get();
+    }
+    return modules.get();
   }
 
   void projectOpened()
@@ -478,6 +501,7 @@ public class ManProject
     {
       // only listen to type changes if this project is using manifold jars
       addTypeRefreshListener();
+      DumbService.getInstance( _ijProject ).runWhenSmart( () -> _psiClassCache.projectOpened() );
     }
   }
 
@@ -722,6 +746,7 @@ public class ManProject
     _projectConnection.disconnect();
     _projectConnection = null;
     PROJECTS.remove( getNativeProject() );
+    FragmentCache.instance().projectClosed( getNativeProject() );
     if( _fileModificationManager != null )
     {
       _fileModificationManager.getManRefresher().nukeFromOrbit();
@@ -758,17 +783,54 @@ public class ManProject
     return _rootModules.get();
   }
 
+  /**
+   * Scans the roots of all modules concurrently on the platform's bounded job pool, which also carries the caller's
+   * read action to the workers. This is most of the work of defining modules: classpath and source root resolution,
+   * jar manifests, source file detection. It runs before the lock of {@link #_modules} is taken and needs nothing
+   * else of this project, so workers never reenter {@link #getModules()}.
+   */
+  private Map<Module, ModuleRoots> scanModuleRoots()
+  {
+    List<Module> allIjModules = Arrays.asList( ModuleManager.getInstance( _ijProject ).getModules() );
+    Map<Module, ModuleRoots> roots = new ConcurrentHashMap<>();
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress( allIjModules,
+      ProgressManager.getInstance().getProgressIndicator(), ijModule -> {
+        roots.put( ijModule, scanModuleRoots( ijModule ) );
+        return true;
+      } );
+    return roots;
+  }
+
+  /**
+   * Defines modules in phases: create, add dependencies, reduce classpaths, initialize type manifolds. Module roots are
+   * already scanned, see {@link #scanModuleRoots()}. The phases run on the calling thread, which holds the lock of
+   * {@link #_modules}, type manifold initialization may reenter {@link #getModules()} and manifold's module internals
+   * are not thread-safe.
+   */
   private Map<Module, ManModule> defineModules()
   {
+    long start = System.nanoTime();
     ModuleManager moduleManager = ModuleManager.getInstance( _ijProject );
     Module[] allIjModules = moduleManager.getModules();
+    Map<Module, ModuleRoots> roots = _moduleRoots.get();
+    Map<Module, ModuleInitTiming> timings = new HashMap<>();
 
     // create modules
     Map<Module, ManModule> modules = new HashMap<>();
     Map<Module, ManModule> allModules = new LinkedHashMap<>();
     for( Module ijModule: allIjModules )
     {
-      final ManModule module = defineModule( ijModule );
+      ModuleInitTiming timing = new ModuleInitTiming();
+      timings.put( ijModule, timing );
+      long t = System.nanoTime();
+      ModuleRoots moduleRoots = roots.get( ijModule );
+      if( moduleRoots == null )
+      {
+        // added after the scan
+        moduleRoots = scanModuleRoots( ijModule );
+      }
+      final ManModule module = createModule( ijModule, moduleRoots );
+      timing._define = moduleRoots.scanNanos() + System.nanoTime() - t;
       modules.put( ijModule, module );
       allModules.put( ijModule, module );
       _hasNamedModule = _hasNamedModule || isNamedModule( ijModule );
@@ -777,27 +839,90 @@ public class ManProject
     // add module dependencies
     for( Module ijModule: allIjModules )
     {
+      long t = System.nanoTime();
       addModuleDependencies( modules, modules.get( ijModule ) );
+      timings.get( ijModule )._dependencies = System.nanoTime() - t;
     }
 
     // reduce classpaths
     Set<ManModule> visited = new HashSet<>();
     for( ManModule manModule: allModules.values() )
     {
+      long t = System.nanoTime();
       manModule.reduceClasspath( visited );
+      timings.get( manModule.getIjModule() )._classpath = System.nanoTime() - t;
     }
 
     // finally, initialize the type manifolds for each module
     for( ManModule manModule: allModules.values() )
     {
+      long t = System.nanoTime();
       manModule.initializeTypeManifolds();
+      timings.get( manModule.getIjModule() )._typeManifolds = System.nanoTime() - t;
     }
 
+    // dependency closures computed while modules were incomplete are stale
+    allModules.values().forEach( ManModule::clearDependencyClosure );
+
     addCompilerArgs();
 
+    _moduleInitTimings = timings;
+    LOG.info( "Defined " + allModules.size() + " modules in " +
+      TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) + "ms" );
+    if( LOG.isDebugEnabled() )
+    {
+      timings.forEach( ( ijModule, timing ) -> LOG.debug( "Defined module " + ijModule.getName() + ": " + timing ) );
+    }
+
     return allModules;
   }
 
+  /**
+   * @return Timings of the phases of defining each module, from the most recent initialization
+   */
+  public Map<Module, ModuleInitTiming> getModuleInitTimings()
+  {
+    return Collections.unmodifiableMap( _moduleInitTimings );
+  }
+
+  /**
+   * Time spent per phase defining a module, see {@link #defineModules()}.
+   */
+  public static class ModuleInitTiming
+  {
+    private long _define;
+    private long _dependencies;
+    private long _classpath;
+    private long _typeManifolds;
+
+    public long getDefineMillis()
+    {
+      return TimeUnit.NANOSECONDS.toMillis( _define );
+    }
+
+    public long getDependenciesMillis()
+    {
+      return TimeUnit.NANOSECONDS.toMillis( _dependencies );
+    }
+
+    public long getClasspathMillis()
+    {
+      return TimeUnit.NANOSECONDS.toMillis( _classpath );
+    }
+
+    public long getTypeManifoldsMillis()
+    {
+      return TimeUnit.NANOSECONDS.toMillis( _typeManifolds );
+    }
+
+    @Override
+    public String toString()
+    {
+      return "define: " + getDefineMillis() + "ms, dependencies: " + getDependenciesMillis() +
+        "ms, classpath: " + getClasspathMillis() + "ms, type manifolds: " + getTypeManifoldsMillis() + "ms";
+    }
+  }
+
   private void addModuleDependencies( Map<Module, ManModule> modules, ManModule manModule )
   {
     Module ijModule = manModule.getIjModule();
@@ -833,17 +958,16 @@ public class ManProject
     return false;
   }
 
-  private ManModule defineModule( Module ijModule )
+  private ModuleRoots scanModuleRoots( Module ijModule )
   {
+    long start = System.nanoTime();
     List<VirtualFile> sourceFolders = getSourceRoots( ijModule );
-    VirtualFile outputPath = CompilerPaths.getModuleOutputDirectory( ijModule, false );
-    return createModule( ijModule, getInitialClasspaths( ijModule ),
-      sourceFolders.stream().map( this::toDirectory ).collect( Collectors.toCollection( () -> new LinkedHashSet<>() ) ),
-      outputPath == null ? null : getFileSystem().getIDirectory( outputPath ) );
-  }
+    VirtualFile outputDir = CompilerPaths.getModuleOutputDirectory( ijModule, false );
+    Set<IDirectory> classpath = getInitialClasspaths( ijModule );
+    Set<IDirectory> sourcePaths =
+      sourceFolders.stream().map( this::toDirectory ).collect( Collectors.toCollection( () -> new LinkedHashSet<>() ) );
+    IDirectory outputPath = outputDir == null ? null : getFileSystem().getIDirectory( outputDir );
 
-  private ManModule createModule( Module ijModule, Set<IDirectory> classpath, Set<IDirectory> sourcePaths, IDirectory outputPath )
-  {
     // Expand path to include processorPath (type manifolds can be listed there exclusively)
     classpath = addProcessorPath( ijModule, classpath );
 
@@ -855,7 +979,22 @@ public class ManProject
     List<IDirectory> sourceRoots = new ArrayList<>( sourcePaths );
     scanPaths( classpath, sourceRoots );
 
-    return new ManModule( this, ijModule, new ArrayList<>( classpath ), sourceRoots, Collections.singletonList( outputPath ), getExcludedFolders( ijModule ) );
+    return new ModuleRoots( new ArrayList<>( classpath ), sourceRoots, outputPath, getExcludedFolders( ijModule ),
+      System.nanoTime() - start );
+  }
+
+  private ManModule createModule( Module ijModule, ModuleRoots roots )
+  {
+    return new ManModule( this, ijModule, roots.classpath(), roots.sourceRoots(),
+      Collections.singletonList( roots.outputPath() ), roots.excludedDirs() );
+  }
+
+  /**
+   * A module's roots as scanned on a worker thread, see {@link #scanModuleRoots()}.
+   */
+  private record ModuleRoots( List<IDirectory> classpath, List<IDirectory> sourceRoots, IDirectory outputPath,
+                              List<IDirectory> excludedDirs, long scanNanos )
+  {
   }
 
   private Set<IDirectory> addProcessorPath( Module ijModule, Set<IDirectory> classpath )
@@ -1066,4 +1205,9 @@ public class ManProject
   {
     return _psiClassCache;
   }
+
+  public ManShortNamesIndex getShortNamesIndex()
+  {
+    return _shortNamesIndex;
+  }
 }
@@ -30,11 +30,12 @@ import manifold.ij.extensions.ManJavaResolveCache;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import static manifold.ij.extensions.ManJavaResolveCache.UNARY_INV;
+import static manifold.ij.extensions.ManJavaResolveCache.UNARY_MINUS;
+import static manifold.ij.extensions.ManJavaResolveCache.UNARY_NOT;
+
 public class ManPsiPrefixExpressionImpl extends PsiPrefixExpressionImpl implements IManOperatorOverloadReference
 {
-  private static final String UNARY_MINUS = "unaryMinus";
-  private static final String UNARY_INV = "inv";
-  private static final String UNARY_NOT = "not";
 
   @Override
   public PsiType getType()
@@ -99,7 +100,7 @@ public class ManPsiPrefixExpressionImpl extends PsiPrefixExpressionImpl implemen
       return null;
     }
 
-    PsiMethod[] members = psiClassOperand.getAllMethods();
+    PsiMethod[] members = ManJavaResolveCache.getOperatorMethods( psiClassOperand, opName );
 
     PsiType operationReturnType = getUnaryOperationReturnType( opName, operandType, members );
     if( operationReturnType != null )
@@ -115,7 +116,7 @@ public class ManPsiPrefixExpressionImpl extends PsiPrefixExpressionImpl implemen
       {
         if( iface instanceof PsiClassType )
         {
-          operationReturnType = getUnaryOperationReturnType( opName, iface, psiIface.getAllMethods() );
+          operationReturnType = getUnaryOperationReturnType( opName, iface, ManJavaResolveCache.getOperatorMethods( psiIface, opName ) );
           if( operationReturnType != null )
           {
             return operationReturnType;
@@ -23,66 +23,171 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileDocumentManagerListener;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.testFramework.LightVirtualFile;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import manifold.ij.extensions.ManDefinitions;
 import manifold.ij.util.ReparseUtil;
 import manifold.preprocessor.definitions.Definitions;
 import org.jetbrains.annotations.NotNull;
 
 /**
- * For preprocessor and dbconfig.  When a build.properties or *.dbconfig file is saved, open Java files reparse.
+ * For preprocessor and dbconfig.  When a build.properties or *.dbconfig file is saved, Java files reparse. A
+ * build.properties change reparses only the Java files in its directory tree that reference a symbol whose value
+ * changed, see {@link manifold.ij.extensions.PreprocessorSymbolIndex}.
  *
  * todo: make the conditions for reparsing, currently dbconfig and build.properties, pluggable.
- * todo: even better: if manifold IModel had concept of model dependencies, we could determine exactly the set of files
- *  that need to reparse instead of reparsing everything. We could also reparse non-open files, because we need to if the
- *  file was opened then closed because IJ does not retokenize when reopening a file.
+ * todo: if manifold IModel had concept of model dependencies, we could determine exactly the set of files that need to
+ *  reparse for a dbconfig change instead of reparsing recent files.
  */
 class ReparseFileTrigger implements FileDocumentManagerListener
 {
   private final Project _ijProject;
+  /** The last known symbols of each build.properties file */
+  private final Map<VirtualFile, Map<String, String>> _buildSymbols;
 
   ReparseFileTrigger( Project ijProject )
   {
     _ijProject = ijProject;
+    _buildSymbols = new ConcurrentHashMap<>();
   }
 
   @Override
   public void beforeDocumentSaving( @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    // the file still has the previous content
+    maybeReparseJavaFiles( document, Baseline.File );
   }
 
   @Override
   public void fileContentReloaded( @NotNull VirtualFile file, @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    // the file changed externally, the previous content is only known if we or the preprocessor have seen it
+    maybeReparseJavaFiles( document, Baseline.LastRead );
   }
 
   @Override
   public void fileContentLoaded( @NotNull VirtualFile file, @NotNull Document document )
   {
-    maybeReparseOpenJavaFiles( document );
+    // the file may have changed externally while no document was loaded, e.g. by a checkout
+    maybeReparseJavaFiles( document, Baseline.LastRead );
   }
 
-  private void maybeReparseOpenJavaFiles( @NotNull Document document )
+  private void maybeReparseJavaFiles( @NotNull Document document, Baseline baseline )
   {
-    if( shouldReparse( document ) )
+    VirtualFile vfile = FileDocumentManager.getInstance().getFile( document );
+    Trigger trigger = getTrigger( vfile, document );
+    if( trigger == Trigger.DbConfig )
     {
       ReparseUtil.instance().reparseRecentJavaFiles( _ijProject );
     }
+    else if( trigger == Trigger.BuildProperties )
+    {
+      Set<String> changedSymbols = updateBuildSymbols( vfile, document, baseline );
+      ManDefinitions.buildPropertiesChanged( vfile.getPath() );
+      VirtualFile dir = vfile.getParent();
+      if( dir != null )
+      {
+        ReparseUtil.instance().reparseJavaFilesReferencing( _ijProject, dir, changedSymbols );
+      }
+    }
   }
 
-  private boolean shouldReparse( Document document )
+  /**
+   * @return The symbols in {@code buildProperties} added, removed or having a different value than before
+   */
+  private Set<String> updateBuildSymbols( VirtualFile buildProperties, Document document, Baseline baseline )
+  {
+    Map<String, String> symbols = loadSymbols( document.getText() );
+    Map<String, String> prior = _buildSymbols.put( buildProperties, symbols );
+    if( prior == null )
+    {
+      switch( baseline )
+      {
+        case File:
+          prior = loadSymbols( buildProperties );
+          break;
+        default:
+          // the symbols the preprocessor last used, otherwise all symbols may have changed
+          String text = ManDefinitions.getLastReadBuildProperties( buildProperties.getPath() );
+          if( text == null )
+          {
+            return symbols.keySet();
+          }
+          prior = loadSymbols( text );
+          break;
+      }
+    }
+
+    Set<String> changed = new HashSet<>();
+    for( Map.Entry<String, String> entry: symbols.entrySet() )
+    {
+      if( !Objects.equals( entry.getValue(), prior.get( entry.getKey() ) ) )
+      {
+        changed.add( entry.getKey() );
+      }
+    }
+    for( String symbol: prior.keySet() )
+    {
+      if( !symbols.containsKey( symbol ) )
+      {
+        changed.add( symbol );
+      }
+    }
+    return changed;
+  }
+
+  private static Map<String, String> loadSymbols( VirtualFile buildProperties )
+  {
+    try
+    {
+      return loadSymbols( VfsUtilCore.loadText( buildProperties ) );
+    }
+    catch( IOException e )
+    {
+      return Collections.emptyMap();
+    }
+  }
+
+  private static Map<String, String> loadSymbols( String text )
+  {
+    Properties props = new Properties();
+    try
+    {
+      props.load( new StringReader( text ) );
+    }
+    catch( IOException | IllegalArgumentException e )
+    {
+      // malformed, consider what loaded
+    }
+    Map<String, String> symbols = new HashMap<>();
+    for( String name: props.stringPropertyNames() )
+    {
+      symbols.put( name, props.getProperty( name ) );
+    }
+    return symbols;
+  }
+
+  private Trigger getTrigger( VirtualFile vfile, Document document )
   {
-    VirtualFile vfile = FileDocumentManager.getInstance().getFile( document );
     if( vfile == null || vfile instanceof LightVirtualFile )
     {
       // we check for LightVirtualFile because if that's the case IJ loses its mind if two or more projects are open
       // because a light vfile can only belong to one project, so our next call to PsiDocumentManager.getInstance( _project ).getPsiFile
       // below would otherwise log an ugly error (but not throw), thus we avoid the ugly error here
-      return false;
+      return Trigger.None;
     }
 
     try
@@ -94,12 +199,12 @@ class ReparseFileTrigger implements FileDocumentManagerListener
         if( fileExt != null && fileExt.equalsIgnoreCase( "dbconfig" ) )
         {
           // DbConfig file changed
-          return true;
+          return Trigger.DbConfig;
         }
         else if( Definitions.BUILD_PROPERTIES.equalsIgnoreCase( vfile.getName() ) )
         {
           // Build.properties file changed
-          return true;
+          return Trigger.BuildProperties;
         }
       }
     }
@@ -109,6 +214,19 @@ class ReparseFileTrigger implements FileDocumentManagerListener
       // - for some reason due to "Recursive file view provider creation"
       // - "Light files should have PSI only in one project"
     }
-    return false;
+    return Trigger.None;
+  }
+
+  private enum Trigger
+  {
+    None, DbConfig, BuildProperties
+  }
+
+  /**
+   * What a build.properties document is compared with when its prior symbols are not known
+   */
+  private enum Baseline
+  {
+    File, LastRead
   }
 }
@@ -0,0 +1,77 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.openapi.util.Key;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.impl.source.PsiExtensibleClass;
+import com.intellij.psi.util.CachedValue;
+import java.util.List;
+import java.util.Map;
+import manifold.util.ReflectUtil;
+
+/**
+ * Shared by the augment providers that cache each kind of augment in a {@link CachedValue} keyed on the class.
+ */
+class AugmentCacheUtil
+{
+  private static volatile boolean _stabilityChecksDisabled;
+
+  /**
+   * @return The key of the first kind in {@code keys} that {@code cls} is, or null if augments of {@code cls} are not
+   * provided
+   */
+  @SuppressWarnings( {"unchecked", "rawtypes"} )
+  static <E extends PsiElement> Key<CachedValue<List<E>>> getCacheKey( Class<E> cls,
+                                                                       Map<Class<? extends PsiElement>, Key<?>> keys )
+  {
+    for( Map.Entry<Class<? extends PsiElement>, Key<?>> entry: keys.entrySet() )
+    {
+      if( entry.getKey().isAssignableFrom( cls ) )
+      {
+        return (Key)entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The cached augments if they are up-to-date, otherwise null
+   */
+  static <E extends PsiElement> List<E> getUpToDateAugments( PsiExtensibleClass psiClass, Key<CachedValue<List<E>>> key )
+  {
+    CachedValue<List<E>> cachedValue = psiClass.getUserData( key );
+    return cachedValue != null && cachedValue.hasUpToDateValue() ? cachedValue.getValue() : null;
+  }
+
+  /**
+   * A stale cached value recomputes with the provider it was created with, a new provider is equivalent, so the
+   * platform's check that providers are equivalent is pointless here. Disable it once.
+   */
+  static void disableStabilityChecks()
+  {
+    if( !_stabilityChecksDisabled )
+    {
+      _stabilityChecksDisabled = true;
+      ReflectUtil.FieldRef DO_CHECKS = ReflectUtil.field( "com.intellij.util.CachedValueStabilityChecker", "DO_CHECKS" );
+      try { if( (boolean)DO_CHECKS.getStatic() ) DO_CHECKS.setStatic( false ); } catch( Throwable ignore ){}
+    }
+  }
+}
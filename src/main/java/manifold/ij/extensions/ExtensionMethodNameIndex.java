@@ -0,0 +1,232 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.*;
+import com.intellij.psi.impl.source.PsiExtensibleClass;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.IOUtil;
+import com.intellij.util.io.KeyDescriptor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import manifold.ext.ExtensionManifold;
+import manifold.ext.rt.api.Extension;
+import manifold.ext.rt.api.This;
+import manifold.ext.rt.api.ThisClass;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Indexes extension methods declared in Java source by name. The value maps the qualified name of each extension class
+ * in the file declaring a method of that name to the fqn of the class it extends, derived from the extension class's
+ * package as {@link ExtensionManifold} does. An inner extension class and its enclosing class may declare methods of
+ * the same name, they extend different classes.
+ * <p/>
+ * The index is purely syntactic, annotations are matched by name since resolving is not permitted during indexing, and
+ * only a class's own members are indexed, augmented members depend on other files.
+ */
+public class ExtensionMethodNameIndex extends FileBasedIndexExtension<String, Map<String, String>>
+{
+  public static final ID<String, Map<String, String>> NAME = ID.create( "manifold.ExtensionMethodNameIndex" );
+
+  @Override
+  public @NotNull ID<String, Map<String, String>> getName()
+  {
+    return NAME;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, Map<String, String>, FileContent> getIndexer()
+  {
+    return ExtensionMethodNameIndex::index;
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor()
+  {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public @NotNull DataExternalizer<Map<String, String>> getValueExternalizer()
+  {
+    return new DataExternalizer<>()
+    {
+      @Override
+      public void save( @NotNull DataOutput out, Map<String, String> value ) throws IOException
+      {
+        DataInputOutputUtil.writeINT( out, value.size() );
+        for( Map.Entry<String, String> entry: value.entrySet() )
+        {
+          IOUtil.writeUTF( out, entry.getKey() );
+          IOUtil.writeUTF( out, entry.getValue() );
+        }
+      }
+
+      @Override
+      public Map<String, String> read( @NotNull DataInput in ) throws IOException
+      {
+        int size = DataInputOutputUtil.readINT( in );
+        Map<String, String> value = new HashMap<>( size );
+        for( int i = 0; i < size; i++ )
+        {
+          value.put( IOUtil.readUTF( in ), IOUtil.readUTF( in ) );
+        }
+        return value;
+      }
+    };
+  }
+
+  @Override
+  public int getVersion()
+  {
+    return 3;
+  }
+
+  @Override
+  public FileBasedIndex.@NotNull InputFilter getInputFilter()
+  {
+    return new DefaultFileTypeSpecificInputFilter( JavaFileType.INSTANCE );
+  }
+
+  @Override
+  public boolean dependsOnFileContent()
+  {
+    return true;
+  }
+
+  /**
+   * @return The fqn of the class {@code method} extends, or null if {@code method} is not an indexed extension method.
+   * Returns null in dumb mode.
+   */
+  static @Nullable String findExtendedFqn( @NotNull Project project, @NotNull PsiMethod method )
+  {
+    PsiFile file = method.getContainingFile();
+    VirtualFile vfile = file == null ? null : file.getVirtualFile();
+    PsiClass extClass = method.getContainingClass();
+    String extClassName = extClass == null ? null : extClass.getQualifiedName();
+    if( vfile == null || extClassName == null || DumbService.isDumb( project ) )
+    {
+      return null;
+    }
+    Map<String, String> byExtClass = FileBasedIndex.getInstance().getFileData( NAME, vfile, project ).get( method.getName() );
+    return byExtClass == null ? null : byExtClass.get( extClassName );
+  }
+
+  private static Map<String, Map<String, String>> index( FileContent content )
+  {
+    if( !StringUtil.contains( content.getContentAsText(), Extension.class.getSimpleName() ) )
+    {
+      return Collections.emptyMap();
+    }
+
+    PsiFile psiFile = content.getPsiFile();
+    if( !(psiFile instanceof PsiJavaFile) )
+    {
+      return Collections.emptyMap();
+    }
+
+    String packageName = ((PsiJavaFile)psiFile).getPackageName();
+    int iExt = packageName.indexOf( ExtensionManifold.EXTENSIONS_PACKAGE + '.' );
+    if( iExt < 0 )
+    {
+      return Collections.emptyMap();
+    }
+    String extendedFqn = packageName.substring( iExt + ExtensionManifold.EXTENSIONS_PACKAGE.length() + 1 );
+
+    Map<String, Map<String, String>> map = new HashMap<>();
+    for( PsiClass topLevelClass: ((PsiJavaFile)psiFile).getClasses() )
+    {
+      if( hasAnnotation( topLevelClass.getModifierList(), Extension.class ) )
+      {
+        indexClass( topLevelClass, extendedFqn, map );
+      }
+    }
+    return map;
+  }
+
+  private static void indexClass( PsiClass extClass, String extendedFqn, Map<String, Map<String, String>> map )
+  {
+    // own members only, augmented members depend on other files and must not be indexed with this one
+    if( !(extClass instanceof PsiExtensibleClass) )
+    {
+      return;
+    }
+    String extClassName = extClass.getQualifiedName();
+    for( PsiMethod method: ((PsiExtensibleClass)extClass).getOwnMethods() )
+    {
+      if( extClassName != null && isExtensionMethod( method ) )
+      {
+        map.computeIfAbsent( method.getName(), __ -> new HashMap<>() ).put( extClassName, extendedFqn );
+      }
+    }
+    for( PsiClass innerClass: ((PsiExtensibleClass)extClass).getOwnInnerClasses() )
+    {
+      indexClass( innerClass, extendedFqn + '.' + innerClass.getName(), map );
+    }
+  }
+
+  private static boolean isExtensionMethod( PsiMethod method )
+  {
+    PsiModifierList modifierList = method.getModifierList();
+    if( !modifierList.hasExplicitModifier( PsiModifier.STATIC ) )
+    {
+      return false;
+    }
+    if( hasAnnotation( modifierList, Extension.class ) )
+    {
+      return true;
+    }
+    PsiParameter[] params = method.getParameterList().getParameters();
+    return params.length > 0 &&
+      (hasAnnotation( params[0].getModifierList(), This.class ) ||
+        hasAnnotation( params[0].getModifierList(), ThisClass.class ));
+  }
+
+  private static boolean hasAnnotation( PsiModifierList modifierList, Class<?> annoClass )
+  {
+    if( modifierList == null )
+    {
+      return false;
+    }
+    for( PsiAnnotation anno: modifierList.getAnnotations() )
+    {
+      PsiJavaCodeReferenceElement ref = anno.getNameReferenceElement();
+      if( ref != null && (annoClass.getSimpleName().equals( ref.getReferenceName() ) ||
+        annoClass.getTypeName().equals( ref.getText() )) )
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+}
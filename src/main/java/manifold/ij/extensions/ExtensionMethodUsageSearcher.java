@@ -26,9 +26,12 @@ import com.intellij.openapi.module.impl.scopes.ModuleWithDependenciesScope;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFileWithId;
 import com.intellij.psi.JavaPsiFacade;
-import com.intellij.psi.PsiAnnotation;
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCompiledElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiModifierList;
 import com.intellij.psi.PsiParameter;
@@ -92,70 +95,31 @@ public class ExtensionMethodUsageSearcher extends MethodUsagesSearcher
     }
     GlobalSearchScope theSearchScope = (GlobalSearchScope)searchScope;
 
+    Project project = searchParameters.getProject();
     PsiMethod method = searchParameters.getMethod();
-    PsiClass extensionClass = resolveInReadAction( searchParameters.getProject(), method::getContainingClass );
-    if( extensionClass == null )
+    String extendedFqn = resolveInReadAction( project, () -> findExtendedFqn( project, method ) );
+    if( extendedFqn == null )
     {
+      // not an extension method
       return;
     }
 
-    if( !isExtensionClass( searchParameters.getProject(), extensionClass ) )
+    PsiMethod augmentedMethod = resolveInReadAction( project, () ->
     {
-      return;
-    }
-
-    PsiMethod augmentedMethod = resolveInReadAction( searchParameters.getProject(), () ->
-    {
-      if( method.getModifierList().findAnnotation( Extension.class.getName() ) != null )
+      PsiClass extendedClass = JavaPsiFacade.getInstance( project )
+        .findClass( extendedFqn, getTargetScope( theSearchScope, method ) );
+      if( extendedClass == null )
       {
-        String fqn = getExtendedFqn( extensionClass );
-        if( fqn != null )
-        {
-          PsiClass extendedClass = JavaPsiFacade.getInstance( searchParameters.getProject() )
-            .findClass( fqn, getTargetScope( theSearchScope, method ) );
-          if( extendedClass != null )
-          {
-            for( PsiMethod m: extendedClass.findMethodsByName( method.getName(), false ) )
-            {
-              if( m instanceof ManExtensionMethodBuilder)
-              {
-                if( PsiUtil.allMethodsHaveSameSignature( new PsiMethod[]{((ManExtensionMethodBuilder)m).getTargetMethod(),
-                      (PsiMethod)method.getNavigationElement()} ) )
-                {
-                  return m;
-                }
-              }
-            }
-          }
-        }
+        return null;
       }
-
-      for( PsiParameter psiParam : method.getParameterList().getParameters() )
+      for( PsiMethod m: extendedClass.findMethodsByName( method.getName(), false ) )
       {
-        PsiModifierList modifierList = psiParam.getModifierList();
-        if( modifierList != null &&
-          (modifierList.findAnnotation( This.class.getName() ) != null ||
-            modifierList.findAnnotation( ThisClass.class.getName() ) != null) )
+        if( m instanceof ManExtensionMethodBuilder )
         {
-          String fqn = getExtendedFqn( extensionClass );
-          PsiClass extendedClass = fqn == null
-                                   ? null
-                                   : JavaPsiFacade.getInstance( searchParameters.getProject() )
-                                     .findClass( fqn, getTargetScope( theSearchScope, method ) );
-          if( extendedClass == null )
-          {
-            continue;
-          }
-          for( PsiMethod m : extendedClass.findMethodsByName( method.getName(), false ) )
+          if( PsiUtil.allMethodsHaveSameSignature( new PsiMethod[]{((ManExtensionMethodBuilder)m).getTargetMethod(),
+                (PsiMethod)method.getNavigationElement()} ) )
           {
-            if( m instanceof ManExtensionMethodBuilder )
-            {
-              if( PsiUtil.allMethodsHaveSameSignature( new PsiMethod[] {((ManExtensionMethodBuilder)m).getTargetMethod(),
-                    (PsiMethod)method.getNavigationElement()} ) )
-              {
-                return m;
-              }
-            }
+            return m;
           }
         }
       }
@@ -170,17 +134,56 @@ public class ExtensionMethodUsageSearcher extends MethodUsagesSearcher
     }
   }
 
-  private static boolean isExtensionClass( Project project, PsiClass extensionClass )
+  /**
+   * The class {@code method} extends is taken from {@link ExtensionMethodNameIndex}, which also rules out methods that
+   * are not extension methods. Compiled and generated (e.g., IExtensionClassProducer) extension classes are not
+   * indexed, nor is anything in dumb mode, in those cases it is derived from the extension class.
+   *
+   * @return The fqn of the class {@code method} extends, or null if {@code method} is not an extension method
+   */
+  private static String findExtendedFqn( Project project, PsiMethod method )
   {
-    PsiAnnotation extensionAnno = resolveInReadAction( project, () ->
+    PsiFile file = method.getContainingFile();
+    if( !DumbService.isDumb( project ) && file instanceof PsiJavaFile && !(file instanceof PsiCompiledElement) &&
+      file.getVirtualFile() instanceof VirtualFileWithId )
+    {
+      return ExtensionMethodNameIndex.findExtendedFqn( project, method );
+    }
+
+    PsiClass extensionClass = method.getContainingClass();
+    if( extensionClass == null || !isExtensionClass( extensionClass ) || !isExtensionMethod( method ) )
+    {
+      return null;
+    }
+    return getExtendedFqn( extensionClass );
+  }
+
+  private static boolean isExtensionClass( PsiClass extensionClass )
+  {
+    // only require the toplevel class to have @Extension
+    PsiClass topLevelClass = PsiUtil.getTopLevelClass( extensionClass );
+    PsiClass psiClass = topLevelClass == null ? extensionClass : topLevelClass;
+    PsiModifierList modifierList = psiClass.getModifierList();
+    return modifierList != null && modifierList.findAnnotation( Extension.class.getName() ) != null;
+  }
+
+  private static boolean isExtensionMethod( PsiMethod method )
+  {
+    if( method.getModifierList().findAnnotation( Extension.class.getName() ) != null )
+    {
+      return true;
+    }
+    for( PsiParameter psiParam : method.getParameterList().getParameters() )
+    {
+      PsiModifierList modifierList = psiParam.getModifierList();
+      if( modifierList != null &&
+        (modifierList.findAnnotation( This.class.getName() ) != null ||
+          modifierList.findAnnotation( ThisClass.class.getName() ) != null) )
       {
-        // only require the toplevel class to have @Extension
-        PsiClass topLevelClass = PsiUtil.getTopLevelClass( extensionClass );
-        PsiClass psiClass = topLevelClass == null ? extensionClass : topLevelClass;
-        PsiModifierList modifierList = psiClass.getModifierList();
-        return modifierList == null ? null : modifierList.findAnnotation( Extension.class.getName() );
-      } );
-    return extensionAnno != null;
+        return true;
+      }
+    }
+    return false;
   }
 
   private GlobalSearchScope getTargetScope( GlobalSearchScope searchScope, PsiMethod method )
@@ -196,7 +199,7 @@ public class ExtensionMethodUsageSearcher extends MethodUsagesSearcher
            : GlobalSearchScope.allScope( method.getProject() );
   }
 
-  private String getExtendedFqn( PsiClass extensionClass )
+  private static String getExtendedFqn( PsiClass extensionClass )
   {
     PsiClass topLevelClass = PsiUtil.getTopLevelClass( extensionClass );
     if( topLevelClass == null )
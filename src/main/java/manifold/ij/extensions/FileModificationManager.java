@@ -26,9 +26,11 @@ package manifold.ij.extensions;
 import com.intellij.injected.editor.VirtualFileWindow;
 import com.intellij.openapi.application.AccessToken;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.BulkFileListener;
 import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
@@ -41,27 +43,127 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.impl.PsiDocumentTransactionListener;
 import com.intellij.testFramework.LightVirtualFile;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import manifold.api.fs.IFile;
+import manifold.api.fs.IFileFragment;
 import manifold.api.fs.IResource;
+import manifold.api.host.RefreshKind;
 import manifold.ij.core.ManProject;
 import manifold.ij.fs.IjFile;
 import manifold.ij.util.DelayedRunner;
 import manifold.ij.util.FileUtil;
 import manifold.ij.util.ReparseUtil;
 import manifold.ij.util.SlowOperationsUtil;
-
+import manifold.preprocessor.definitions.Definitions;
+
+/**
+ * Translates document and VFS changes into type system refreshes.
+ * <p/>
+ * Changes are batched: they accumulate for a quiet window of {@link #BATCH_WINDOW_KEY} milliseconds and are then
+ * dispatched together, coalesced per file, see {@link ManRefreshListener#refresh(Map)}. This way a burst of changes,
+ * such as typing or a VCS update, costs one refresh per affected file instead of one per change. A batch is dispatched
+ * no later than {@link #MAX_BATCH_LATENCY_FACTOR} windows after its first change, even if changes keep coming. A
+ * window of zero dispatches each change immediately, as in tests unless a test sets the window.
+ * <p/>
+ * Fragments embedded in Java files are batched the same way, see {@link #fragmentChanged(IFileFragment, PsiFile, boolean)}.
+ */
 public class FileModificationManager implements PsiDocumentTransactionListener, BulkFileListener
 {
-  @SuppressWarnings("FieldCanBeLocal")
-  private static int TYPE_REFRESH_DELAY_MS = 0;
+  private static final Logger LOG = Logger.getInstance( FileModificationManager.class );
+
+  private static final String BATCH_WINDOW_KEY = "manifold.refresh.batch.window.ms";
+  private static final int MAX_BATCH_LATENCY_FACTOR = 4;
+  private static final String BATCH_TASK_ID = "manifold.refresh.batch";
+  private static final String FRAGMENT_BATCH_TASK_ID = "manifold.refresh.fragment.batch";
 
   private final DelayedRunner _typeRefresher = new DelayedRunner();
   private final Project _project;
   private final ManProject _manProject;
   private ManRefreshListener _manRefresher;
 
+  // pending changes keyed by file path, guarded by this
+  private Map<String, PendingChange> _pending = new LinkedHashMap<>();
+  private long _batchStart;
+  private int _batchEvents;
+  // the batch dispatch is posted and has not yet run, guarded by this
+  private boolean _batchPosted;
+
+  // pending fragment changes keyed by fragment path and hosts to re-annotate, guarded by this
+  private Map<String, IFileFragment> _pendingFragments = new LinkedHashMap<>();
+  private Set<PsiFile> _pendingAnnotatorHosts = new LinkedHashSet<>();
+  private long _fragmentBatchStart;
+
+  private final AtomicLong _batchCount = new AtomicLong();
+  private final AtomicLong _eventCount = new AtomicLong();
+  private final AtomicLong _dispatchedCount = new AtomicLong();
+
+  private static class PendingChange
+  {
+    private final IResource _file;
+    private final List<RefreshKind> _kinds;
+
+    PendingChange( IResource file )
+    {
+      _file = file;
+      _kinds = new ArrayList<>( 2 );
+    }
+
+    /**
+     * Coalesce {@code kind} with the changes already pending for the file.
+     *
+     * @return false if the changes cancel out
+     */
+    boolean add( RefreshKind kind )
+    {
+      RefreshKind last = _kinds.isEmpty() ? null : _kinds.get( _kinds.size() - 1 );
+      switch( kind )
+      {
+        case MODIFICATION:
+          if( last == null || last == RefreshKind.DELETION )
+          {
+            _kinds.add( kind );
+          }
+          // else a modification after creation or modification is subsumed by it
+          break;
+
+        case CREATION:
+          if( last != RefreshKind.CREATION )
+          {
+            _kinds.add( kind );
+          }
+          break;
+
+        case DELETION:
+          if( last == RefreshKind.MODIFICATION )
+          {
+            _kinds.remove( _kinds.size() - 1 );
+            last = _kinds.isEmpty() ? null : _kinds.get( _kinds.size() - 1 );
+          }
+          if( last == RefreshKind.CREATION )
+          {
+            // created and deleted within the batch
+            _kinds.remove( _kinds.size() - 1 );
+          }
+          else if( last != RefreshKind.DELETION )
+          {
+            _kinds.add( kind );
+          }
+          break;
+      }
+      return !_kinds.isEmpty();
+    }
+  }
+
   private class Refresher implements Runnable
   {
     private final Project _project;
@@ -91,9 +193,39 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
     return _manRefresher;
   }
 
-  private String getRefreshTaskId( VirtualFile virtualFile )
+  /**
+   * @return The number of batches dispatched in this session
+   */
+  public long getBatchCount()
+  {
+    return _batchCount.get();
+  }
+
+  /**
+   * @return The number of changes received for batching in this session
+   */
+  public long getEventCount()
+  {
+    return _eventCount.get();
+  }
+
+  /**
+   * @return The number of changes dispatched in this session after coalescing
+   */
+  public long getDispatchedCount()
   {
-    return virtualFile.getPath();
+    return _dispatchedCount.get();
+  }
+
+  private int getBatchWindow()
+  {
+    if( ApplicationManager.getApplication().isUnitTestMode() &&
+      !Registry.get( BATCH_WINDOW_KEY ).isChangedFromDefault() )
+    {
+      // dispatch immediately unless a test sets a window
+      return 0;
+    }
+    return Registry.intValue( BATCH_WINDOW_KEY, 0 );
   }
 
   // PsiDocumentTransactionListener
@@ -112,15 +244,7 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
       file = ((VirtualFileWindow)file).getDelegate();
     }
 
-    final Runnable refresher = new Refresher( _project, file );
-    if( TYPE_REFRESH_DELAY_MS == 0 )
-    {
-      refresher.run();
-    }
-    else
-    {
-      _typeRefresher.scheduleTask( getRefreshTaskId( file ), TYPE_REFRESH_DELAY_MS, refresher );
-    }
+    new Refresher( _project, file ).run();
 
 //    // process inner class changes
 //    if( psiFile instanceof PsiClassOwner )
@@ -181,6 +305,25 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
       return;
     }
 
+    if( events.stream().anyMatch( this::isMoveOrRename ) )
+    {
+      // interned resources have the old paths
+      _manProject.getFileSystem().clearAllCaches();
+      ManDefinitions.buildPropertiesChanged();
+    }
+    else
+    {
+      for( VFileEvent event : events )
+      {
+        String path = event.getPath();
+        if( Definitions.BUILD_PROPERTIES.equalsIgnoreCase( path.substring( path.lastIndexOf( '/' ) + 1 ) ) )
+        {
+          // created, deleted or changed externally, the preprocessor must not see the prior content
+          ManDefinitions.buildPropertiesChanged( path );
+        }
+      }
+    }
+
     DumbService dumb = DumbService.getInstance( _project );
     if( dumb.isDumb() )
     {
@@ -251,8 +394,11 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
       return;
     }
 
-    // Handle the Deletion *before* it is renamed
-    fireDeletedEvent( originalFile );
+    // Handle the Deletion *before* it is renamed, changes batched for the original file or the files in the original
+    // directory are dispatched first so they are not reordered after it
+    IResource file = FileUtil.toIResource( _project, originalFile );
+    flushPending( file );
+    _manRefresher.deleted( file );
   }
 
   private void processRenameAfter( VFileEvent event )
@@ -294,16 +440,218 @@ public class FileModificationManager implements PsiDocumentTransactionListener,
 
   private void fireModifiedEvent( IResource file )
   {
-    _manRefresher.modified( file );
+    fire( file, RefreshKind.MODIFICATION );
   }
 
   private void fireDeletedEvent( IResource file )
   {
-    _manRefresher.deleted( file );
+    fire( file, RefreshKind.DELETION );
   }
 
   private void fireCreatedEvent( IResource file )
   {
-    _manRefresher.created( file );
+    fire( file, RefreshKind.CREATION );
+  }
+
+  private void fire( IResource file, RefreshKind kind )
+  {
+    int window = getBatchWindow();
+    if( window <= 0 )
+    {
+      switch( kind )
+      {
+        case CREATION:
+          _manRefresher.created( file );
+          break;
+        case MODIFICATION:
+          _manRefresher.modified( file );
+          break;
+        case DELETION:
+          _manRefresher.deleted( file );
+          break;
+      }
+      return;
+    }
+
+    synchronized( this )
+    {
+      long now = System.currentTimeMillis();
+      if( _pending.isEmpty() )
+      {
+        _batchStart = now;
+        _batchEvents = 0;
+      }
+      _batchEvents++;
+      _eventCount.incrementAndGet();
+
+      String path = file.getPath().getPathString();
+      PendingChange change = _pending.computeIfAbsent( path, k -> new PendingChange( file ) );
+      if( !change.add( kind ) )
+      {
+        _pending.remove( path );
+      }
+
+      // debounce, but don't let a steady stream of changes postpone the batch indefinitely
+      long remaining = _batchStart + (long)window * MAX_BATCH_LATENCY_FACTOR - now;
+      _typeRefresher.scheduleTask( BATCH_TASK_ID, Math.max( 0, Math.min( window, remaining ) ), this::flush );
+    }
+  }
+
+  /**
+   * Dispatch the changes pending for {@code file}, or for the files in it if it is a directory, ahead of the batch.
+   */
+  private void flushPending( IResource file )
+  {
+    String path = file.getPath().getPathString();
+    Map<IResource, List<RefreshKind>> changes = new LinkedHashMap<>();
+    int dispatched = 0;
+    synchronized( this )
+    {
+      for( Iterator<Map.Entry<String, PendingChange>> iter = _pending.entrySet().iterator(); iter.hasNext(); )
+      {
+        Map.Entry<String, PendingChange> entry = iter.next();
+        if( entry.getKey().equals( path ) || entry.getKey().startsWith( path + '/' ) )
+        {
+          changes.put( entry.getValue()._file, entry.getValue()._kinds );
+          dispatched += entry.getValue()._kinds.size();
+          iter.remove();
+        }
+      }
+    }
+    if( !changes.isEmpty() )
+    {
+      _manRefresher.refresh( changes );
+      _dispatchedCount.addAndGet( dispatched );
+    }
+  }
+
+  private void flush()
+  {
+    synchronized( this )
+    {
+      if( _pending.isEmpty() || _batchPosted )
+      {
+        return;
+      }
+      _batchPosted = true;
+    }
+
+    // the changes stay pending until the dispatch runs, which waits out dumb mode, so a rename arriving meanwhile still
+    // dispatches its prior changes ahead of its deletion, see flushPending()
+    DumbService.getInstance( _project ).smartInvokeLater( () -> {
+      Map<String, PendingChange> batch;
+      int events;
+      synchronized( this )
+      {
+        _batchPosted = false;
+        batch = _pending;
+        events = _batchEvents;
+        _pending = new LinkedHashMap<>();
+      }
+      if( batch.isEmpty() || _project.isDisposed() )
+      {
+        return;
+      }
+
+      long start = System.currentTimeMillis();
+      Map<IResource, List<RefreshKind>> changes = new LinkedHashMap<>();
+      int dispatched = 0;
+      for( PendingChange change: batch.values() )
+      {
+        changes.put( change._file, change._kinds );
+        dispatched += change._kinds.size();
+      }
+      ApplicationManager.getApplication().runReadAction( () -> _manRefresher.refresh( changes ) );
+
+      _batchCount.incrementAndGet();
+      _dispatchedCount.addAndGet( dispatched );
+      LOG.debug( "Refresh batch: " + events + " changes, " + changes.size() + " files, " + dispatched +
+        " dispatched, " + (System.currentTimeMillis() - start) + "ms" );
+    } );
+  }
+
+  /**
+   * A fragment in {@code host} was (re)parsed, refresh its type. The fragment is refreshed as deleted and created, the
+   * most recent parse of a fragment wins within a batch. If {@code rerunAnnotators} is true, the host's annotators are
+   * rerun once the batch is dispatched.
+   */
+  void fragmentChanged( IFileFragment fragment, PsiFile host, boolean rerunAnnotators )
+  {
+    int window = getBatchWindow();
+    if( window <= 0 )
+    {
+      dispatchFragments( Collections.singletonMap( fragment.getPath().getPathString(), fragment ),
+        rerunAnnotators ? Collections.singleton( host ) : Collections.emptySet() );
+      return;
+    }
+
+    synchronized( this )
+    {
+      long now = System.currentTimeMillis();
+      if( _pendingFragments.isEmpty() && _pendingAnnotatorHosts.isEmpty() )
+      {
+        _fragmentBatchStart = now;
+      }
+      _pendingFragments.put( fragment.getPath().getPathString(), fragment );
+      if( rerunAnnotators )
+      {
+        _pendingAnnotatorHosts.add( host );
+      }
+
+      long remaining = _fragmentBatchStart + (long)window * MAX_BATCH_LATENCY_FACTOR - now;
+      _typeRefresher.scheduleTask( FRAGMENT_BATCH_TASK_ID, Math.max( 0, Math.min( window, remaining ) ),
+        this::flushFragments );
+    }
+  }
+
+  private void flushFragments()
+  {
+    Map<String, IFileFragment> fragments;
+    Set<PsiFile> hosts;
+    synchronized( this )
+    {
+      fragments = _pendingFragments;
+      hosts = _pendingAnnotatorHosts;
+      _pendingFragments = new LinkedHashMap<>();
+      _pendingAnnotatorHosts = new LinkedHashSet<>();
+    }
+    dispatchFragments( fragments, hosts );
+  }
+
+  private void dispatchFragments( Map<String, IFileFragment> fragments, Set<PsiFile> hosts )
+  {
+    if( fragments.isEmpty() && hosts.isEmpty() )
+    {
+      return;
+    }
+
+    // note, this must be posted to the event thread so as not to hold a fragment element's lock while indirectly
+    // accessing ManifoldPsiClassCache's monitor, otherwise deadlock will result. Dispatched as file batches are, after
+    // indexing completes
+    DumbService.getInstance( _project ).smartInvokeLater( () -> {
+      if( _project.isDisposed() )
+      {
+        return;
+      }
+
+      Map<IResource, List<RefreshKind>> changes = new LinkedHashMap<>();
+      for( IFileFragment fragment: fragments.values() )
+      {
+        changes.put( fragment, Arrays.asList( RefreshKind.DELETION, RefreshKind.CREATION ) );
+      }
+      ApplicationManager.getApplication().runReadAction( () ->
+        // note see ide.slow.operations.assertion.manifold.fragments registrykey defined in plugin.xml
+        SlowOperationsUtil.allowSlowOperation( "manifold.fragments", () -> _manRefresher.refresh( changes ) ) );
+
+      for( PsiFile host: hosts )
+      {
+        if( host.isValid() )
+        {
+          // necessary when renaming a file fragment's type
+          ReparseUtil.instance().rerunAnnotators( host, "Manifold fragment/inline in comment" );
+        }
+      }
+      LOG.debug( "Fragment refresh batch: " + fragments.size() + " fragments, " + hosts.size() + " hosts" );
+    } );
   }
 }
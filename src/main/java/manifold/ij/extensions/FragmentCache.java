@@ -20,28 +20,39 @@
 package manifold.ij.extensions;
 
 
-import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.project.Project;
-import com.intellij.psi.PsiElement;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
-import com.intellij.util.FileContentUtilCore;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import manifold.api.fs.IFileFragment;
+import manifold.ij.util.FileUtil;
+import manifold.ij.util.ReparseUtil;
 import manifold.ij.util.SlowOperationsUtil;
 import manifold.util.concurrent.ConcurrentHashSet;
 
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Tracks the fragments embedded in Java files, indexed by the fragment's type name and by host file. A fragment
+ * registers itself when its host is parsed, see {@link PsiFileFragment#handleFragments(PsiJavaFile)}, so the index is
+ * maintained incrementally as files are edited. Registrations for fragments that were removed are dropped when they
+ * are found stale, the prior name of a fragment renamed in place is dropped when the fragment registers again. A
+ * project's fragments are dropped when it closes.
+ */
 public class FragmentCache
 {
   private static FragmentCache INSTANCE;
 
-  private final ConcurrentHashMap<Project, ConcurrentHashMap<String, MaybeSmartPsiElementPointer<PsiFileFragment>>> _cache;
-  private final ConcurrentHashSet<CacheAdder> _queuedAdds = new ConcurrentHashSet<>();
-  private final Set<Project> _reparsingAll = new ConcurrentHashSet<>();
+  private final ConcurrentHashMap<Project, ProjectFragments> _cache;
+  private final Set<Project> _renewingAll = new ConcurrentHashSet<>();
 
 
   public static FragmentCache instance()
@@ -54,47 +65,22 @@ public class FragmentCache
     _cache = new ConcurrentHashMap<>();
   }
 
-  public void add( MaybeSmartPsiElementPointer<PsiFileFragment> psiFileFragmentPointer )
-  {
-    _queuedAdds.add( new CacheAdder( psiFileFragmentPointer ) );
-  }
-  private class CacheAdder
+  /**
+   * Register the fragment, {@code containingFile} is the fragment's host, which may not be connected to the fragment's
+   * element yet.
+   */
+  public void add( MaybeSmartPsiElementPointer<PsiFileFragment> psiFileFragmentPointer, IFileFragment fragment,
+                   PsiJavaFile containingFile )
   {
-    private final MaybeSmartPsiElementPointer<PsiFileFragment> _psiFileFragmentPointer;
-
-    public CacheAdder( MaybeSmartPsiElementPointer<PsiFileFragment> psiFileFragmentPointer )
+    Project project = containingFile.getProject();
+    if( project.isDisposed() )
     {
-      _psiFileFragmentPointer = psiFileFragmentPointer;
+      return;
     }
 
-    public boolean process()
-    {
-      if( _psiFileFragmentPointer.isPermanentlyInvalid() )
-      {
-        // done trying to add this (it stayed invalid and never became wrapped in a smart pointer)
-        return true;
-      }
-
-      PsiFileFragment psiFileFragment = _psiFileFragmentPointer.getElement();
-      if( psiFileFragment == null )
-      {
-        // invalid, done with this
-        return true;
-      }
-
-      if( !psiFileFragment.isValid() )
-      {
-        // fragment may not be connected to a psi file yet, keep this adder queued for another attempt
-        return false;
-      }
-
-      IFileFragment fragment = psiFileFragment.getFragment();
-      String fqn = FragmentCache.this.getFragmentClassName( fragment, psiFileFragment.getContainingFile() );
-      _cache.computeIfAbsent( psiFileFragment.getProject(), __ -> new ConcurrentHashMap<>() )
-        .put( fqn, _psiFileFragmentPointer );
-      // added to queue, done with this
-      return true;
-    }
+    String fqn = containingFile.getPackageName() + '.' + fragment.getBaseName();
+    VirtualFile host = FileUtil.toVirtualFile( containingFile );
+    _cache.computeIfAbsent( project, __ -> new ProjectFragments() ).add( fqn, host, psiFileFragmentPointer );
   }
 
   /**
@@ -109,143 +95,187 @@ public class FragmentCache
       return;
     }
 
-    updateCache();
-
-    ConcurrentHashMap<String, MaybeSmartPsiElementPointer<PsiFileFragment>> projCache =
-      _cache.computeIfAbsent( project, __ -> new ConcurrentHashMap<>() );
-    MaybeSmartPsiElementPointer<PsiFileFragment> smartPointer = projCache.get( fqn );
+    ProjectFragments projCache = _cache.get( project );
+    MaybeSmartPsiElementPointer<PsiFileFragment> smartPointer = projCache == null ? null : projCache._byFqn.get( fqn );
     if( smartPointer == null )
     {
       return;
     }
 
+    PsiFileFragment psiFileFragment = getValidFragment( projCache, fqn, smartPointer );
+    if( psiFileFragment != null )
+    {
+      psiFileFragment.handleFragments( (PsiJavaFile)psiFileFragment.getContainingFile() );
+    }
+  }
+
+  /**
+   * @return The fragment if it is valid. If it is gone, its registration is removed. Null is also returned for a
+   * fragment not connected to its file yet, it remains registered.
+   */
+  private PsiFileFragment getValidFragment( ProjectFragments projCache, String fqn,
+                                            MaybeSmartPsiElementPointer<PsiFileFragment> smartPointer )
+  {
     PsiFileFragment psiFileFragment = smartPointer.getElement();
     if( psiFileFragment != null && psiFileFragment.isValid() )
     {
-      psiFileFragment.handleFragments( (PsiJavaFile)psiFileFragment.getContainingFile() );
+      return psiFileFragment;
     }
-    else
+    if( psiFileFragment == null || smartPointer.isPermanentlyInvalid() )
     {
-      projCache.remove( fqn );
+      projCache.remove( fqn, smartPointer );
     }
+    return null;
   }
 
-  private void updateCache()
+  /**
+   * Register all the project's fragments with their type manifolds again, for instance after types are refreshed
+   * wholesale. Only the fragments are renewed, their hosts are not reparsed. Hosts are renewed one at a time in
+   * non-blocking read actions on a background thread, so write actions are not held up by renewing a project's worth
+   * of fragments. The resulting type refreshes are batched, see {@link FileModificationManager}, and annotators are
+   * rerun for the hosts.
+   */
+  public void renewAll( Project project )
   {
-    expungeDisposedProjects();
-    flushQueuedAdds();
+    if( !_renewingAll.add( project ) )
+    {
+      return;
+    }
+
+    ProjectFragments projCache = _cache.get( project );
+    if( projCache == null )
+    {
+      _renewingAll.remove( project );
+      return;
+    }
+    renewNext( project, projCache, new ArrayDeque<>( projCache._byFile.keySet() ) );
   }
 
-  private void expungeDisposedProjects()
+  private void renewNext( Project project, ProjectFragments projCache, Queue<VirtualFile> hosts )
   {
-    _cache.keySet().removeIf( Project::isDisposed );
+    VirtualFile host = hosts.poll();
+    if( host == null || project.isDisposed() )
+    {
+      _renewingAll.remove( project );
+      return;
+    }
+
+    try
+    {
+      // a write action cancels and restarts the read action, renewing a host again is harmless
+      ReadAction.nonBlocking( () -> {
+          Set<String> fqns = projCache._byFile.get( host );
+          if( fqns != null )
+          {
+            // note see ide.slow.operations.assertion.manifold.fragments registrykey defined in plugin.xml
+            SlowOperationsUtil.allowSlowOperation( "manifold.fragments", () -> renewFile( projCache, host, fqns ) );
+          }
+        } )
+        .expireWith( project )
+        .submit( AppExecutorUtil.getAppExecutorService() )
+        .onProcessed( __ -> renewNext( project, projCache, hosts ) );
+    }
+    catch( Throwable t )
+    {
+      _renewingAll.remove( project );
+    }
   }
 
-  private void flushQueuedAdds()
+  private void renewFile( ProjectFragments projCache, VirtualFile host, Set<String> fqns )
   {
-    for( Iterator<CacheAdder> iterator = _queuedAdds.iterator(); iterator.hasNext(); )
+    PsiFile containingFile = null;
+    for( String fqn: new ArrayList<>( fqns ) )
     {
-      CacheAdder queuedAdd = iterator.next();
-      try
+      MaybeSmartPsiElementPointer<PsiFileFragment> smartPointer = projCache._byFqn.get( fqn );
+      PsiFileFragment psiFileFragment = smartPointer == null ? null : getValidFragment( projCache, fqn, smartPointer );
+      if( psiFileFragment == null )
       {
-        if( queuedAdd.process() )
+        if( smartPointer == null )
         {
-          iterator.remove();
+          fqns.remove( fqn );
         }
+        continue;
       }
-      catch( Throwable t )
+      containingFile = psiFileFragment.getContainingFile();
+      if( containingFile instanceof PsiJavaFile )
       {
-        iterator.remove();
-        throw t;
+        psiFileFragment.handleFragments( (PsiJavaFile)containingFile );
       }
     }
+
+    if( fqns.isEmpty() )
+    {
+      projCache._byFile.remove( host, fqns );
+    }
+    else if( containingFile != null )
+    {
+      ReparseUtil.instance().rerunAnnotators( containingFile, "Manifold fragments renewed" );
+    }
   }
 
   /**
-   * Reparse all parsed files that have at least one fragment
+   * Drop the project's fragments, their pointers and files must not outlive the project.
    */
-  public void reparseAll( Project project )
+  public void projectClosed( Project project )
   {
-    if( _reparsingAll.contains( project ) )
-    {
-      return;
-    }
+    _cache.remove( project );
+  }
 
-    _reparsingAll.add( project );
-    try
+  public Set<String> getAllClassNames( Project project )
+  {
+    ProjectFragments projCache = _cache.get( project );
+    return projCache == null ? Collections.emptySet() : projCache._byFqn.keySet();
+  }
+
+  private static class ProjectFragments
+  {
+    private final Map<String, MaybeSmartPsiElementPointer<PsiFileFragment>> _byFqn = new ConcurrentHashMap<>();
+    private final Map<VirtualFile, Set<String>> _byFile = new ConcurrentHashMap<>();
+
+    private void add( String fqn, VirtualFile host, MaybeSmartPsiElementPointer<PsiFileFragment> smartPointer )
     {
-      ApplicationManager.getApplication().invokeLater( () ->
+      _byFqn.put( fqn, smartPointer );
+      if( host == null )
       {
-        try
-        {
-          ApplicationManager.getApplication().runReadAction( () ->
-          {
-            if( project.isDisposed() )
-            {
-              _cache.remove( project );
-              return;
-            }
+        return;
+      }
 
-            updateCache();
+      Set<String> fqns = _byFile.computeIfAbsent( host, __ -> ConcurrentHashMap.newKeySet() );
+      fqns.add( fqn );
 
-            // note see ide.slow.operations.assertion.manifold.fragments registrykey defined in plugin.xml
-            SlowOperationsUtil.allowSlowOperation( "manifold.fragments",
-              () -> {
-                Set<PsiFile> files = new HashSet<>();
-                ConcurrentHashMap<String, MaybeSmartPsiElementPointer<PsiFileFragment>> projCache = _cache.get( project );
-                for( MaybeSmartPsiElementPointer<PsiFileFragment> value : projCache.values() )
-                {
-                  PsiFileFragment psiFileFragment = value.getElement();
-                  if( psiFileFragment != null )
-                  {
-                    PsiFile containingFile = psiFileFragment.getContainingFile();
-                    if( containingFile.getProject() == project )
-                    {
-                      files.add( containingFile );
-                    }
-                  }
-                }
-                FileContentUtilCore.reparseFiles( files.stream().map( f -> f.getVirtualFile() ).toList() );
-              } );
-          } );
-        }
-        finally
+      // a fragment renamed in place registers again under its new name, drop the host's names no fragment has anymore
+      for( String prior: new ArrayList<>( fqns ) )
+      {
+        MaybeSmartPsiElementPointer<PsiFileFragment> priorPointer = _byFqn.get( prior );
+        if( !prior.equals( fqn ) && (priorPointer == null || isRenamed( prior, priorPointer )) )
         {
-          _reparsingAll.remove( project );
+          fqns.remove( prior );
+          if( priorPointer != null )
+          {
+            remove( prior, priorPointer );
+          }
         }
-      } );
-    }
-    catch( Throwable t )
-    {
-      _reparsingAll.remove( project );
+      }
     }
-  }
 
-  private String getFragmentClassName( IFileFragment fragment, PsiFile containingFile )
-  {
-    String fragClass = null;
-    if( containingFile instanceof PsiJavaFile )
+    private boolean isRenamed( String fqn, MaybeSmartPsiElementPointer<PsiFileFragment> smartPointer )
     {
-      fragClass = ((PsiJavaFile)containingFile).getPackageName() + '.' + fragment.getBaseName();
-    }
-    else
-    {
-      MaybeSmartPsiElementPointer container = (MaybeSmartPsiElementPointer)fragment.getContainer();
-      if( container != null )
+      PsiFileFragment psiFileFragment = smartPointer.getElement();
+      if( psiFileFragment == null || !psiFileFragment.isValid() || psiFileFragment.getFragment() == null ||
+        !(psiFileFragment.getContainingFile() instanceof PsiJavaFile) )
       {
-        PsiElement elem = container.getElement();
-        containingFile = elem != null ? elem.getContainingFile() : null;
-        if( containingFile != null )
-        {
-          fragClass = ((PsiJavaFile)containingFile).getPackageName() + '.' + fragment.getBaseName();
-        }
+        // not connected yet or gone, see getValidFragment()
+        return false;
       }
+
+      String packageName = ((PsiJavaFile)psiFileFragment.getContainingFile()).getPackageName();
+      return !fqn.equals( packageName + '.' + psiFileFragment.getFragment().getBaseName() );
     }
-    return fragClass;
-  }
 
-  public Set<String> getAllClassNames( Project project )
-  {
-    return _cache.get( project ).keySet();
+    private void remove( String fqn, MaybeSmartPsiElementPointer<PsiFileFragment> smartPointer )
+    {
+      // the fqn may have been registered again in the meantime
+      _byFqn.remove( fqn, smartPointer );
+    }
   }
 }
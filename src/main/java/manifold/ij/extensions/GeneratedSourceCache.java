@@ -0,0 +1,414 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.plugins.IdeaPluginDescriptor;
+import com.intellij.ide.plugins.PluginManagerCore;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.util.Computable;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import manifold.api.fs.IDirectory;
+import manifold.api.fs.IFile;
+import manifold.api.fs.IFileFragment;
+import manifold.api.type.ContributorKind;
+import manifold.api.type.ITypeManifold;
+import manifold.ij.core.ManModule;
+import manifold.ij.core.ManProject;
+import manifold.ij.util.FP64;
+import manifold.util.concurrent.ConcurrentHashSet;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
+
+/**
+ * Persists the Java source type manifolds contribute for Primary/Partial types in the IDE's system directory, so it
+ * survives restarts.
+ * <p/>
+ * An entry is keyed by the type's fqn and module, and it is valid only while its fingerprint matches. The fingerprint
+ * covers the plugin version and, for the module and every module in its dependency closure, the module's manifold
+ * settings, its Java classpath, and the implementation and resource file contents of <i>all</i> its Primary/Partial
+ * type manifolds. Generated types commonly depend on sibling resources e.g., a GraphQL query on its schema, a JSON
+ * schema on another via $ref, and on the libraries the type manifolds resolve against. Fingerprints are computed with
+ * {@link FP64} from file content, timestamps are never considered. Project Java sources are not covered; the persisted
+ * source is parsed anew and its references to them resolve against the current project.
+ * <p/>
+ * Once a module's resources change during the session, this cache is bypassed for the module and the modules
+ * depending on it until the next full refresh; in-session changes are handled by {@link ManifoldPsiClassCache}. Java
+ * files and fragments do not affect entries. Sources produced with diagnostics are not persisted since the diagnostics
+ * are not.
+ * <p/>
+ * Module fingerprints are computed in the background when the project opens and after a full refresh, until a
+ * module's fingerprint is ready this cache misses for the module and the modules depending on it. Entries are written
+ * on a background thread. Entries not used for {@link #MAX_AGE_DAYS} days are deleted.
+ */
+class GeneratedSourceCache
+{
+  private static final Logger LOG = Logger.getInstance( GeneratedSourceCache.class );
+  private static final int FORMAT_VERSION = 2;
+  private static final String PLUGIN_ID = "manifold.ij";
+  private static final long MAX_AGE_DAYS = 30;
+
+  private final ManProject _project;
+  private final Map<ManModule, FP64> _fingerprints;
+  private final Set<ManModule> _dirtyModules;
+  private final Set<ManModule> _scheduledModules;
+  private final AtomicLong _epoch;
+  private final ExecutorService _fingerprinter;
+  private final ExecutorService _writer;
+  private volatile Path _dir;
+
+  GeneratedSourceCache( ManProject project )
+  {
+    _project = project;
+    _fingerprints = new ConcurrentWeakHashMap<>();
+    _dirtyModules = new ConcurrentHashSet<>();
+    _scheduledModules = new ConcurrentHashSet<>();
+    _epoch = new AtomicLong();
+    _fingerprinter = AppExecutorUtil.createBoundedApplicationPoolExecutor( "Manifold Generated Source Fingerprints", 1 );
+    _writer = AppExecutorUtil.createBoundedApplicationPoolExecutor( "Manifold Generated Source Cache", 1 );
+    _writer.execute( this::prune );
+  }
+
+  /**
+   * @return The persisted source for {@code topLevelFqn}, or null if there is no entry or its fingerprint is stale
+   */
+  String find( ManModule module, String topLevelFqn, Collection<ITypeManifold> tms )
+  {
+    FP64 fp = fingerprint( module, topLevelFqn, tms );
+    if( fp == null )
+    {
+      return null;
+    }
+
+    File file = getEntryFile( module, topLevelFqn );
+    if( !file.isFile() )
+    {
+      return null;
+    }
+
+    String source;
+    try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ) )
+    {
+      if( in.readInt() != FORMAT_VERSION || in.readLong() != fp.getRawFingerprint() )
+      {
+        return null;
+      }
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully( bytes );
+      source = new String( bytes, StandardCharsets.UTF_8 );
+    }
+    catch( IOException e )
+    {
+      LOG.debug( "Failed to read cached source for: " + topLevelFqn, e );
+      return null;
+    }
+
+    // the entry is in use, keep it from being pruned
+    _writer.execute( () -> {
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified( System.currentTimeMillis() );
+    } );
+    return source;
+  }
+
+  void store( ManModule module, String topLevelFqn, Collection<ITypeManifold> tms, String source )
+  {
+    FP64 fp = fingerprint( module, topLevelFqn, tms );
+    if( fp == null )
+    {
+      return;
+    }
+
+    File file = getEntryFile( module, topLevelFqn );
+    _writer.execute( () -> write( file, fp, topLevelFqn, source ) );
+  }
+
+  private void write( File file, FP64 fp, String topLevelFqn, String source )
+  {
+    try
+    {
+      //noinspection ResultOfMethodCallIgnored
+      file.getParentFile().mkdirs();
+      File temp = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+      try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) ) )
+      {
+        byte[] bytes = source.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( FORMAT_VERSION );
+        out.writeLong( fp.getRawFingerprint() );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+      }
+      Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+    catch( IOException e )
+    {
+      LOG.debug( "Failed to cache source for: " + topLevelFqn, e );
+    }
+  }
+
+  /**
+   * {@code file} changed in {@code module} during this session. Unless it is a Java file or a fragment, which entries
+   * do not depend on, stop using the cache for the module and the modules depending on it.
+   */
+  void invalidate( ManModule module, IFile file )
+  {
+    if( file instanceof IFileFragment || file != null && "java".equalsIgnoreCase( file.getExtension() ) )
+    {
+      return;
+    }
+
+    for( ManModule m: _project.getModules().values() )
+    {
+      if( m.getDependencyClosure().contains( module ) )
+      {
+        _dirtyModules.add( m );
+        _fingerprints.remove( m );
+      }
+    }
+  }
+
+  /**
+   * Modules and resources may have changed wholesale, fingerprints are recomputed in the background.
+   */
+  void reset()
+  {
+    _epoch.incrementAndGet();
+    _dirtyModules.clear();
+    _fingerprints.clear();
+    _scheduledModules.clear();
+    computeFingerprints();
+  }
+
+  /**
+   * Fingerprint all modules in the background, hashing every Primary/Partial resource must not hold up resolution.
+   */
+  void computeFingerprints()
+  {
+    _fingerprinter.execute( () -> {
+      if( !_project.getNativeProject().isDisposed() )
+      {
+        _project.getModules().values().forEach( this::scheduleFingerprint );
+      }
+    } );
+  }
+
+  private void scheduleFingerprint( ManModule module )
+  {
+    if( !_scheduledModules.add( module ) )
+    {
+      return;
+    }
+
+    long epoch = _epoch.get();
+    _fingerprinter.execute( () -> {
+      if( _project.getNativeProject().isDisposed() )
+      {
+        return;
+      }
+      FP64 fp;
+      try
+      {
+        fp = fingerprint( module );
+      }
+      catch( RuntimeException e )
+      {
+        LOG.debug( "Failed to fingerprint module: " + module.getName(), e );
+        _scheduledModules.remove( module );
+        return;
+      }
+      _fingerprints.put( module, fp );
+      if( _epoch.get() != epoch || _dirtyModules.contains( module ) )
+      {
+        // reset or invalidated meanwhile
+        _fingerprints.remove( module, fp );
+      }
+    } );
+  }
+
+  private FP64 fingerprint( ManModule module, String topLevelFqn, Collection<ITypeManifold> tms )
+  {
+    for( ITypeManifold tm: tms )
+    {
+      if( isFragment( tm.findFilesForType( topLevelFqn ) ) )
+      {
+        // fragments live in Java files and change with them, not worth persisting
+        return null;
+      }
+    }
+
+    FP64 fp = new FP64( topLevelFqn );
+    fp.extend( getPluginVersion() );
+    for( ManModule m: module.getDependencyClosure() )
+    {
+      if( _dirtyModules.contains( m ) )
+      {
+        return null;
+      }
+      FP64 moduleFp = _fingerprints.get( m );
+      if( moduleFp == null )
+      {
+        // not ready yet
+        scheduleFingerprint( m );
+        return null;
+      }
+      fp.extend( moduleFp.getRawFingerprint() );
+    }
+    return fp;
+  }
+
+  /**
+   * Fingerprint the module's manifold settings, Java classpath and Primary/Partial type manifolds.
+   */
+  private static FP64 fingerprint( ManModule module )
+  {
+    FP64 fp = new FP64( module.getName() );
+    fp.extend( module.isExtEnabled() + ":" + module.isStringsEnabled() + ":" + module.isExceptionsEnabled() + ":" +
+      module.isPreprocessorEnabled() + ":" + module.isPropertiesEnabled() + ":" + module.isParamsEnabled() + ":" +
+      module.isDelegationEnabled() + ":" + module.isTuplesEnabled() );
+    for( IDirectory entry: module.getJavaClassPath() )
+    {
+      // jar names carry their versions
+      fp.extend( entry.getPath().getPathString() );
+    }
+    module.getTypeManifolds().stream()
+      .filter( tm -> tm.getContributorKind() == ContributorKind.Primary ||
+        tm.getContributorKind() == ContributorKind.Partial )
+      .sorted( Comparator.comparing( tm -> tm.getClass().getName() ) )
+      .forEach( tm -> fp.extend( fingerprint( tm ).getRawFingerprint() ) );
+    return fp;
+  }
+
+  /**
+   * Fingerprint the type manifold's implementation and the contents of all its resource files.
+   */
+  private static FP64 fingerprint( ITypeManifold tm )
+  {
+    FP64 fp = new FP64( tm.getClass().getName() );
+    String jar = PathManager.getJarPathForClass( tm.getClass() );
+    if( jar != null )
+    {
+      // the jar name carries the version
+      fp.extend( jar );
+    }
+    // sort by path, the fingerprint must not depend on the order type names happen to be stored in
+    TreeMap<String, IFile> files = ApplicationManager.getApplication().runReadAction(
+      (Computable<TreeMap<String, IFile>>)() -> findFiles( tm ) );
+    // hashed outside the read action
+    for( Map.Entry<String, IFile> entry: files.entrySet() )
+    {
+      fp.extend( entry.getKey() );
+      try( InputStream in = entry.getValue().openInputStream() )
+      {
+        fp.extend( in );
+      }
+      catch( IOException e )
+      {
+        // missing or unreadable, the fingerprint reflects the path alone
+      }
+    }
+    return fp;
+  }
+
+  private static TreeMap<String, IFile> findFiles( ITypeManifold tm )
+  {
+    TreeMap<String, IFile> files = new TreeMap<>();
+    for( String fqn: tm.getAllTypeNames() )
+    {
+      for( IFile file: tm.findFilesForType( fqn ) )
+      {
+        if( !(file instanceof IFileFragment) )
+        {
+          files.put( file.getPath().getPathString(), file );
+        }
+      }
+    }
+    return files;
+  }
+
+  static String getPluginVersion()
+  {
+    IdeaPluginDescriptor plugin = PluginManagerCore.getPlugin( PluginId.getId( PLUGIN_ID ) );
+    return plugin == null ? "" : plugin.getVersion();
+  }
+
+  private static boolean isFragment( List<IFile> files )
+  {
+    return files.stream().anyMatch( file -> file instanceof IFileFragment );
+  }
+
+  /**
+   * Delete entries not used for {@link #MAX_AGE_DAYS} days along with temp files left by interrupted writes. Entries
+   * of modules and types that no longer exist are never read again, this is what removes them.
+   */
+  private void prune()
+  {
+    Path dir = getDir();
+    if( !Files.isDirectory( dir ) )
+    {
+      return;
+    }
+
+    long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis( MAX_AGE_DAYS );
+    try( Stream<Path> paths = Files.walk( dir ) )
+    {
+      paths.map( Path::toFile )
+        .filter( file -> file.isFile() && (file.getName().endsWith( ".tmp" ) || file.lastModified() < cutoff) )
+        .forEach( File::delete );
+    }
+    catch( IOException | UncheckedIOException e )
+    {
+      LOG.debug( "Failed to prune generated source cache: " + dir, e );
+    }
+  }
+
+  private Path getDir()
+  {
+    Path dir = _dir;
+    if( dir == null )
+    {
+      _dir = dir = Paths.get( PathManager.getSystemPath(), "manifold", "generated",
+        _project.getNativeProject().getLocationHash() );
+    }
+    return dir;
+  }
+
+  private File getEntryFile( ManModule module, String topLevelFqn )
+  {
+    String moduleDir = new FP64( module.getName() ).toHexString();
+    return getDir().resolve( moduleDir ).resolve( topLevelFqn + ".src" ).toFile();
+  }
+}
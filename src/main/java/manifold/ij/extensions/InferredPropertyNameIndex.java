@@ -0,0 +1,207 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.impl.source.PsiExtensibleClass;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Indexes the names of properties {@link PropertyInference} may infer from getter/setter methods declared in Java
+ * source. The index is a superset, whether a candidate is an inferred property is decided when the declaring class is
+ * augmented, see {@link PropertyInference#VAR_TAG}.
+ */
+public class InferredPropertyNameIndex extends ScalarIndexExtension<String>
+{
+  public static final ID<String, Void> NAME = ID.create( "manifold.InferredPropertyNameIndex" );
+
+  @Override
+  public @NotNull ID<String, Void> getName()
+  {
+    return NAME;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, Void, FileContent> getIndexer()
+  {
+    return InferredPropertyNameIndex::index;
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor()
+  {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public int getVersion()
+  {
+    return 3;
+  }
+
+  @Override
+  public FileBasedIndex.@NotNull InputFilter getInputFilter()
+  {
+    return new DefaultFileTypeSpecificInputFilter( JavaFileType.INSTANCE );
+  }
+
+  @Override
+  public boolean dependsOnFileContent()
+  {
+    return true;
+  }
+
+  private static Map<String, Void> index( FileContent content )
+  {
+    if( !mayDeclareAccessor( content.getContentAsText() ) )
+    {
+      // avoid building PSI for files that can't contribute
+      return Collections.emptyMap();
+    }
+
+    PsiFile psiFile = content.getPsiFile();
+    if( !(psiFile instanceof PsiJavaFile) )
+    {
+      return Collections.emptyMap();
+    }
+
+    Map<String, Void> map = new HashMap<>();
+    for( PsiClass psiClass: ((PsiJavaFile)psiFile).getClasses() )
+    {
+      indexClass( psiClass, map );
+    }
+    return map;
+  }
+
+  /**
+   * A quick test on the text, false if no identifier in {@code text} could name a getter or setter declaration: a
+   * "get", "is" or "set" prefix followed by an upper case letter, '$' or '_', then '(', and not preceded by '.' as in a
+   * call. See {@link PropertyInference#derivePropertyNameFromGetter}.
+   */
+  static boolean mayDeclareAccessor( CharSequence text )
+  {
+    int length = text.length();
+    for( int i = 0; i < length; i++ )
+    {
+      char c = text.charAt( i );
+      if( (c != 'g' && c != 's' && c != 'i') || i > 0 && Character.isJavaIdentifierPart( text.charAt( i - 1 ) ) )
+      {
+        continue;
+      }
+
+      int prefixLength = startsWith( text, i, "get" ) || startsWith( text, i, "set" ) ? 3
+        : startsWith( text, i, "is" ) ? 2
+        : 0;
+      int iName = i + prefixLength;
+      if( prefixLength == 0 || iName >= length )
+      {
+        continue;
+      }
+      char first = text.charAt( iName );
+      if( !Character.isUpperCase( first ) && first != '$' && first != '_' )
+      {
+        continue;
+      }
+
+      int iEnd = iName;
+      while( iEnd < length && Character.isJavaIdentifierPart( text.charAt( iEnd ) ) )
+      {
+        iEnd++;
+      }
+      if( isNext( text, iEnd, '(' ) && !isPrevious( text, i, '.' ) )
+      {
+        return true;
+      }
+      i = iEnd - 1;
+    }
+    return false;
+  }
+
+  private static boolean startsWith( CharSequence text, int offset, String prefix )
+  {
+    if( offset + prefix.length() > text.length() )
+    {
+      return false;
+    }
+    for( int i = 0; i < prefix.length(); i++ )
+    {
+      if( text.charAt( offset + i ) != prefix.charAt( i ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isNext( CharSequence text, int offset, char c )
+  {
+    while( offset < text.length() && Character.isWhitespace( text.charAt( offset ) ) )
+    {
+      offset++;
+    }
+    return offset < text.length() && text.charAt( offset ) == c;
+  }
+
+  private static boolean isPrevious( CharSequence text, int offset, char c )
+  {
+    offset--;
+    while( offset >= 0 && Character.isWhitespace( text.charAt( offset ) ) )
+    {
+      offset--;
+    }
+    return offset >= 0 && text.charAt( offset ) == c;
+  }
+
+  private static void indexClass( PsiClass psiClass, Map<String, Void> map )
+  {
+    // own members only, augmented members depend on other files and must not be indexed with this one
+    if( !(psiClass instanceof PsiExtensibleClass) )
+    {
+      return;
+    }
+    for( PsiMethod method: ((PsiExtensibleClass)psiClass).getOwnMethods() )
+    {
+      PropertyInference.PropAttrs fromGetter = PropertyInference.derivePropertyNameFromGetter( method );
+      if( fromGetter != null )
+      {
+        map.put( fromGetter._name, null );
+      }
+      PropertyInference.PropAttrs fromSetter = PropertyInference.derivePropertyNameFromSetter( method );
+      if( fromSetter != null )
+      {
+        map.put( fromSetter._name, null );
+      }
+    }
+    for( PsiClass innerClass: ((PsiExtensibleClass)psiClass).getOwnInnerClasses() )
+    {
+      indexClass( innerClass, map );
+    }
+  }
+}
@@ -0,0 +1,410 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.openapi.vfs.StandardFileSystems;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCompiledElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.impl.source.PsiExtensibleClass;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import java.io.*;
+import java.lang.annotation.Annotation;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import manifold.ext.props.rt.api.set;
+import manifold.ext.props.rt.api.val;
+import manifold.ext.props.rt.api.var;
+import manifold.ij.util.FP64;
+
+/**
+ * Persists the outcome of {@link PropertyInference} for classes from library jars and the JDK in the IDE's system
+ * directory, so getter/setter pairing is not redone each session for binaries that never change.
+ * <p/>
+ * Entries are grouped by the content hash of the containing jar, computed from the CRC-32 of each entry in the jar's
+ * central directory, or from the {@code release} file of a JDK. A new version of a library therefore gets a new set of
+ * entries, the old ones are simply never read again. An entry's key also covers the plugin version, the version of the
+ * inference logic, and the content hashes of the jars declaring the class's supertypes, since pairing checks fields in
+ * the ancestry. Classes with a supertype in source are not cached.
+ * <p/>
+ * An entry records which accessors were paired as var, val or write-only properties, not the resulting fields. Checks
+ * against fields in the class's ancestry are still applied live since they depend on the classpath. An entry is only
+ * used and stored for classes without extension methods and only if the pairing did not involve assignability checks
+ * between different types, because both depend on more than the jar's content. Whether a class is extended is
+ * checked before the lookup so a hit skips computing augments. Classes without properties are not stored. Entries are
+ * written off the calling thread.
+ */
+class LibraryPropertyCache
+{
+  private static final Logger LOG = Logger.getInstance( LibraryPropertyCache.class );
+  private static final int FORMAT_VERSION = 2;
+  /**
+   * Bump when {@link PropertyInference} pairs accessors differently
+   */
+  private static final int INFERENCE_VERSION = 1;
+
+  private static LibraryPropertyCache INSTANCE;
+
+  private final Map<String, JarStamp> _jarStamps;
+  private final ExecutorService _writer;
+  private volatile Path _dir;
+
+  static LibraryPropertyCache instance()
+  {
+    return INSTANCE == null ? INSTANCE = new LibraryPropertyCache() : INSTANCE;
+  }
+
+  private LibraryPropertyCache()
+  {
+    _jarStamps = new ConcurrentHashMap<>();
+    _writer = AppExecutorUtil.createBoundedApplicationPoolExecutor( "Manifold Library Property Cache", 1 );
+  }
+
+  /**
+   * @return The location of {@code psiClass}'s entry, or null if the class or one of its supertypes is not from a
+   * library jar or the JDK
+   */
+  Location locate( PsiExtensibleClass psiClass )
+  {
+    String fqn = psiClass.getQualifiedName();
+    FP64 jarFp = fingerprint( psiClass );
+    if( fqn == null || jarFp == null )
+    {
+      return null;
+    }
+
+    Set<String> ancestryJars = new TreeSet<>();
+    if( !addAncestryJars( psiClass, ancestryJars, new HashSet<>() ) )
+    {
+      return null;
+    }
+    FP64 key = new FP64( "props" )
+      .extend( INFERENCE_VERSION )
+      .extend( GeneratedSourceCache.getPluginVersion() );
+    ancestryJars.forEach( key::extend );
+    return new Location( jarFp.toHexString(), fqn, key.toHexString() );
+  }
+
+  private boolean addAncestryJars( PsiClass psiClass, Set<String> jars, Set<PsiClass> visited )
+  {
+    for( PsiClass superClass: psiClass.getSupers() )
+    {
+      if( !visited.add( superClass ) )
+      {
+        continue;
+      }
+      FP64 fp = fingerprint( superClass );
+      if( fp == null )
+      {
+        return false;
+      }
+      jars.add( fp.toHexString() );
+      if( !addAncestryJars( superClass, jars, visited ) )
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The fingerprint of the jar or JDK containing {@code psiClass}, or null if it is not from either
+   */
+  private FP64 fingerprint( PsiClass psiClass )
+  {
+    if( !(psiClass instanceof PsiCompiledElement) )
+    {
+      return null;
+    }
+
+    PsiFile psiFile = psiClass.getContainingFile();
+    VirtualFile vfile = psiFile == null ? null : psiFile.getVirtualFile();
+    if( vfile == null )
+    {
+      return null;
+    }
+
+    String path = vfile.getPath();
+    int iSep = path.indexOf( JarFileSystem.JAR_SEPARATOR );
+    if( iSep < 0 )
+    {
+      // a class file in an output directory, not immutable
+      return null;
+    }
+
+    String protocol = vfile.getFileSystem().getProtocol();
+    boolean jdk = StandardFileSystems.JRT_PROTOCOL.equals( protocol );
+    if( !jdk && !StandardFileSystems.JAR_PROTOCOL.equals( protocol ) )
+    {
+      return null;
+    }
+
+    return fingerprint( new File( path.substring( 0, iSep ) ), jdk );
+  }
+
+  /**
+   * @return The persisted properties for the class at {@code location}, or null if there is no entry
+   */
+  List<Inferred> find( Location location )
+  {
+    File file = getEntryFile( location );
+    if( !file.isFile() )
+    {
+      return null;
+    }
+
+    try( DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) ) )
+    {
+      if( in.readInt() != FORMAT_VERSION )
+      {
+        return null;
+      }
+      int count = in.readInt();
+      List<Inferred> inferred = new ArrayList<>( count );
+      for( int i = 0; i < count; i++ )
+      {
+        Class<? extends Annotation> varClass = toVarClass( in.readByte() );
+        if( varClass == null )
+        {
+          return null;
+        }
+        inferred.add( new Inferred( varClass, readSignature( in ), readSignature( in ) ) );
+      }
+      return inferred;
+    }
+    catch( IOException e )
+    {
+      LOG.debug( "Failed to read cached properties for: " + location._fqn, e );
+      return null;
+    }
+  }
+
+  void store( Location location, List<Inferred> inferred )
+  {
+    _writer.execute( () -> write( location, inferred ) );
+  }
+
+  private void write( Location location, List<Inferred> inferred )
+  {
+    File file = getEntryFile( location );
+    try
+    {
+      //noinspection ResultOfMethodCallIgnored
+      file.getParentFile().mkdirs();
+      File temp = File.createTempFile( file.getName(), ".tmp", file.getParentFile() );
+      try( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( temp ) ) ) )
+      {
+        out.writeInt( FORMAT_VERSION );
+        out.writeInt( inferred.size() );
+        for( Inferred entry: inferred )
+        {
+          out.writeByte( fromVarClass( entry._varClass ) );
+          out.writeUTF( entry._getter == null ? "" : entry._getter );
+          out.writeUTF( entry._setter == null ? "" : entry._setter );
+        }
+      }
+      Files.move( temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+    catch( IOException e )
+    {
+      LOG.debug( "Failed to cache properties for: " + location._fqn, e );
+    }
+  }
+
+  /**
+   * @return A signature identifying {@code method} among the methods of its class
+   */
+  static String signature( PsiMethod method )
+  {
+    StringBuilder sb = new StringBuilder( method.getName() ).append( '(' );
+    PsiParameter[] params = method.getParameterList().getParameters();
+    for( int i = 0; i < params.length; i++ )
+    {
+      if( i > 0 )
+      {
+        sb.append( ',' );
+      }
+      sb.append( params[i].getType().getCanonicalText() );
+    }
+    return sb.append( ')' ).toString();
+  }
+
+  private static String readSignature( DataInputStream in ) throws IOException
+  {
+    String signature = in.readUTF();
+    return signature.isEmpty() ? null : signature;
+  }
+
+  private static int fromVarClass( Class<? extends Annotation> varClass )
+  {
+    return varClass == var.class ? 0 : varClass == val.class ? 1 : 2;
+  }
+
+  private static Class<? extends Annotation> toVarClass( byte b )
+  {
+    switch( b )
+    {
+      case 0:
+        return var.class;
+      case 1:
+        return val.class;
+      case 2:
+        return set.class;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * The fingerprint is computed once per session unless the file's size or timestamp changes, the timestamp only
+   * triggers recomputation, it is not part of the fingerprint.
+   */
+  private FP64 fingerprint( File root, boolean jdk )
+  {
+    File file = jdk ? new File( root, "release" ) : root;
+    if( !file.isFile() )
+    {
+      return null;
+    }
+
+    long length = file.length();
+    long lastModified = file.lastModified();
+    JarStamp stamp = _jarStamps.get( root.getPath() );
+    if( stamp != null && stamp._length == length && stamp._lastModified == lastModified )
+    {
+      return stamp._fp;
+    }
+
+    FP64 fp;
+    try
+    {
+      fp = jdk ? fingerprintJdk( file ) : fingerprintJar( file );
+    }
+    catch( IOException e )
+    {
+      LOG.debug( "Failed to fingerprint: " + root, e );
+      return null;
+    }
+    _jarStamps.put( root.getPath(), new JarStamp( length, lastModified, fp ) );
+    return fp;
+  }
+
+  private static FP64 fingerprintJar( File jar ) throws IOException
+  {
+    // entry CRCs are read from the central directory, the jar's content is not decompressed
+    FP64 fp = new FP64( "jar" );
+    try( ZipFile zip = new ZipFile( jar ) )
+    {
+      for( Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); )
+      {
+        ZipEntry entry = entries.nextElement();
+        fp.extend( entry.getName() );
+        fp.extend( entry.getCrc() );
+      }
+    }
+    return fp;
+  }
+
+  private static FP64 fingerprintJdk( File release ) throws IOException
+  {
+    // the release file identifies the vendor, version and modules of the JDK
+    FP64 fp = new FP64( "jdk" );
+    try( InputStream in = new FileInputStream( release ) )
+    {
+      fp.extend( in );
+    }
+    return fp;
+  }
+
+  private File getEntryFile( Location location )
+  {
+    Path dir = _dir;
+    if( dir == null )
+    {
+      _dir = dir = Paths.get( PathManager.getSystemPath(), "manifold", "properties" );
+    }
+    return dir.resolve( location._jar ).resolve( location._fqn + '.' + location._key + ".props" ).toFile();
+  }
+
+  static class Location
+  {
+    private final String _jar;
+    private final String _fqn;
+    private final String _key;
+
+    private Location( String jar, String fqn, String key )
+    {
+      _jar = jar;
+      _fqn = fqn;
+      _key = key;
+    }
+  }
+
+  /**
+   * An inferred property, the accessors are identified by {@link #signature(PsiMethod)}. A val has no setter, a
+   * write-only property has no getter.
+   */
+  static class Inferred
+  {
+    final Class<? extends Annotation> _varClass;
+    final String _getter;
+    final String _setter;
+
+    Inferred( Class<? extends Annotation> varClass, String getter, String setter )
+    {
+      _varClass = varClass;
+      _getter = getter;
+      _setter = setter;
+    }
+  }
+
+  private static class JarStamp
+  {
+    private final long _length;
+    private final long _lastModified;
+    private final FP64 _fp;
+
+    private JarStamp( long length, long lastModified, FP64 fp )
+    {
+      _length = length;
+      _lastModified = lastModified;
+      _fp = fp;
+    }
+  }
+}
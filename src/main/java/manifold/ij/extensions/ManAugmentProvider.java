@@ -36,6 +36,7 @@ import com.intellij.psi.impl.source.resolve.graphInference.PsiPolyExpressionUtil
 import com.intellij.psi.infos.MethodCandidateInfo;
 import com.intellij.psi.util.*;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -67,6 +68,7 @@ import manifold.ij.core.ManProject;
 import manifold.ij.fs.IjFile;
 import manifold.ij.psi.ManLightMethodBuilder;
 import manifold.rt.api.util.ManClassUtil;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -155,7 +157,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
           fqn = ((PsiExtensibleClass)element).getQualifiedName();
         }
 
-        LinkedHashMap<String, PsiMethod> augFeatures = new LinkedHashMap<>();
+        LinkedHashMap<SignatureKey, PsiMethod> augFeatures = new LinkedHashMap<>();
         List<Object> dependencies = new ArrayList<>( addMethods( fqn, psiClass, augFeatures ) );
         dependencies.add( psiClass );
 
@@ -182,7 +184,41 @@ public class ManAugmentProvider extends PsiAugmentProvider
     }
   }
 
-  private List<PsiClass> addMethods( String fqn, PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures )
+  /**
+   * @return True if a type manifold supplies extension methods to {@code psiClass}, the same test as
+   * {@link #addMethods(String, PsiClass, LinkedHashMap, ManModule)} without building PSI
+   */
+  static boolean isExtended( PsiClass psiClass )
+  {
+    String fqn = "__Array__".equals( psiClass.getName() ) ? Array.class.getTypeName() : psiClass.getQualifiedName();
+    PsiClass topLevelClass = PsiUtil.getTopLevelClass( psiClass );
+    String topLevelFqn = topLevelClass == null ? null : topLevelClass.getQualifiedName();
+    if( fqn == null || topLevelFqn == null )
+    {
+      return false;
+    }
+
+    for( ManModule manModule : ManProject.manProjectFrom( psiClass.getProject() ).getModules().values() )
+    {
+      for( ITypeManifold tm : manModule.getTypeManifolds() )
+      {
+        if( tm.getContributorKind() == Supplemental )
+        {
+          if( tm.isType( topLevelFqn ) || "__Array__".equals( psiClass.getName() ) )
+          {
+            return true;
+          }
+        }
+        else if( tm instanceof IExtensionClassProducer && ((IExtensionClassProducer)tm).isExtendedType( fqn ) )
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private List<PsiClass> addMethods( String fqn, PsiClass psiClass, LinkedHashMap<SignatureKey, PsiMethod> augFeatures )
   {
     ManProject manProject = ManProject.manProjectFrom( psiClass.getProject() );
     List<PsiClass> extensionClasses = new ArrayList<>();
@@ -193,7 +229,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
     return extensionClasses;
   }
 
-  private List<PsiClass> addMethods( String fqn, PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures, ManModule manModule )
+  private List<PsiClass> addMethods( String fqn, PsiClass psiClass, LinkedHashMap<SignatureKey, PsiMethod> augFeatures, ManModule manModule )
   {
     List<PsiClass> extensionClasses = new ArrayList<>();
 
@@ -288,9 +324,10 @@ public class ManAugmentProvider extends PsiAugmentProvider
    * </ul>
    *
    * <p>Extension methods are converted to synthetic {@link PsiMethod}s and
-   * deduplicated using a rendered signature key. If a method is already present
-   * (e.g., from another module root), the existing method is updated to reference
-   * the additional {@link ManModule} instead of creating a duplicate.
+   * deduplicated using a {@link SignatureKey}. If the same extension class has
+   * already contributed the method (e.g., from another module root), the existing
+   * method is updated to reference the additional {@link ManModule} instead of
+   * creating a duplicate.
    *
    * <h3>{@code @ExtensionSource} Handling</h3>
    * <p>If {@code extClass} declares one or more {@code @ExtensionSource} annotations:
@@ -315,7 +352,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
    * @param manModule   the contributing module
    * @param extClass    the class declaring extension logic (may be {@code null})
    */
-  private void addMethods( PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures, ManModule manModule, PsiClass extClass )
+  private void addMethods( PsiClass psiClass, LinkedHashMap<SignatureKey, PsiMethod> augFeatures, ManModule manModule, PsiClass extClass )
   {
     if( extClass == null )
     {
@@ -330,7 +367,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
       return;
     }
 
-    SrcClass srcExtClass = new StubBuilder().make( qualifiedName, manModule, false );
+    SrcClass srcExtClass = makeExtensionStub( qualifiedName, manModule );
     if( srcExtClass == null )
     {
       return;
@@ -352,16 +389,32 @@ public class ManAugmentProvider extends PsiAugmentProvider
     addMethodsFromExternalSource( psiClass, augFeatures, manModule, extClass, scratchClass );
   }
 
-  private void addMethod( PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures, ManModule manModule,
+  /**
+   * The stub of an extension class is shared by all the classes it extends, and by repeated augmentation of those
+   * classes. It is cached per module until the next PSI modification anywhere in the project, the stub resolves types
+   * outside the extension class so any change may affect it. The stub must not be modified, {@link
+   * #createExtensionMethod} copies the types it takes from it.
+   */
+  private SrcClass makeExtensionStub( String extFqn, ManModule manModule )
+  {
+    ExtensionClassPsiListener listener = _mapExtClassListeners.get( manModule.getIjProject() );
+    if( listener == null )
+    {
+      PsiClass extClass = StubBuilder.findClass( extFqn, manModule );
+      return extClass == null ? null : new StubBuilder().make( extFqn, extClass, manModule, false );
+    }
+    return listener.getStub( extFqn, manModule );
+  }
+
+  private void addMethod( PsiClass psiClass, LinkedHashMap<SignatureKey, PsiMethod> augFeatures, ManModule manModule,
                           PsiClass extClass, boolean isExtensionSource,
                           AbstractSrcMethod<?> m, SrcClass scratchClass )
   {
     SrcMethod srcMethod = createExtensionMethod( scratchClass, m, psiClass );
     if( srcMethod != null )
     {
-      StringBuilder key = new StringBuilder();
-      srcMethod.render( key, 0 );
-      PsiMethod existingMethod = augFeatures.get( key.toString() );
+      SignatureKey key = new SignatureKey( srcMethod, extClass.getQualifiedName() );
+      PsiMethod existingMethod = augFeatures.get( key );
       if( existingMethod != null )
       {
         // already added from another module root, the method has multiple module refs e.g., ManStringExt
@@ -374,13 +427,13 @@ public class ManAugmentProvider extends PsiAugmentProvider
         {
           PsiMethod navMethod = findExtensionMethodNavigationElement( extClass, extMethod, isExtensionSource );
           PsiMethod plantedMethod = plantMethodInPsiClass( manModule, extMethod, psiClass, navMethod );
-          augFeatures.put( key.toString(), plantedMethod );
+          augFeatures.put( key, plantedMethod );
         }
       }
     }
   }
 
-  private void addMethodsFromExternalSource( PsiClass psiClass, LinkedHashMap<String, PsiMethod> augFeatures, ManModule manModule, PsiClass extClass, SrcClass scratchClass )
+  private void addMethodsFromExternalSource( PsiClass psiClass, LinkedHashMap<SignatureKey, PsiMethod> augFeatures, ManModule manModule, PsiClass extClass, SrcClass scratchClass )
   {
     // Process @ExtensionSource annotations declared on the extension class.
     // These allow extension methods to be sourced from external classes.
@@ -459,6 +512,94 @@ public class ManAugmentProvider extends PsiAugmentProvider
 
   private record MethodDescription(String methodName, List<String> parameterFqns) { }
 
+  /**
+   * Identifies an extension method by its declaring extension class, name, erased return and parameter types, and the
+   * number of type parameters. Methods with the same key are the same method contributed from more than one module
+   * root. Same-signature methods from different extension classes keep separate keys, so both are added and the
+   * conflict surfaces as an ambiguous call rather than one of them being dropped.
+   */
+  private static final class SignatureKey
+  {
+    private final String _declaringClass;
+    private final String _name;
+    private final String _returnType;
+    private final String[] _paramTypes;
+    private final int _typeVarCount;
+    private final int _hash;
+
+    private SignatureKey( SrcMethod method, String declaringClass )
+    {
+      _declaringClass = String.valueOf( declaringClass );
+      _name = method.getSimpleName();
+      SrcType returnType = method.getReturnType();
+      _returnType = returnType == null ? "void" : eraseTypeArgs( returnType.getFqName() );
+      List<SrcParameter> params = method.getParameters();
+      _paramTypes = new String[params.size()];
+      for( int i = 0; i < _paramTypes.length; i++ )
+      {
+        SrcType type = params.get( i ).getType();
+        String erased = eraseTypeArgs( type.getFqName() );
+        _paramTypes[i] = type.isEllipsis() ? erased + "[]" : erased;
+      }
+      _typeVarCount = method.getTypeVariables().size();
+      _hash = Objects.hash( _declaringClass, _name, _returnType, Arrays.hashCode( _paramTypes ), _typeVarCount );
+    }
+
+    private static String eraseTypeArgs( String type )
+    {
+      int start = type.indexOf( '<' );
+      if( start < 0 )
+      {
+        return type;
+      }
+      StringBuilder erased = new StringBuilder( type.length() ).append( type, 0, start );
+      int depth = 0;
+      for( int i = start; i < type.length(); i++ )
+      {
+        char c = type.charAt( i );
+        if( c == '<' )
+        {
+          depth++;
+        }
+        else if( c == '>' )
+        {
+          depth--;
+        }
+        else if( depth == 0 )
+        {
+          erased.append( c );
+        }
+      }
+      return erased.toString();
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+      if( this == o )
+      {
+        return true;
+      }
+      if( !(o instanceof SignatureKey) )
+      {
+        return false;
+      }
+      SignatureKey that = (SignatureKey)o;
+      return _hash == that._hash &&
+        _typeVarCount == that._typeVarCount &&
+        _name.equals( that._name ) &&
+        _returnType.equals( that._returnType ) &&
+        _declaringClass.equals( that._declaringClass ) &&
+        Arrays.equals( _paramTypes, that._paramTypes );
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return _hash;
+    }
+  }
+
   /**
    * Returns all annotations of the specified {@code annotationType} declared on
    * {@code extClass}, including those provided via a repeatable container annotation.
@@ -610,7 +751,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
     }
     srcMethod.modifiers( modifiers );
 
-    srcMethod.returns( method.getReturnType() );
+    srcMethod.returns( method.getReturnType().copy() );
 
     String name = method.getSimpleName();
     srcMethod.name( name );
@@ -623,7 +764,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
     for( int i = isInstanceExtensionMethod ? extendedTypeVarCount : 0; i < typeParams.size(); i++ )
     {
       SrcType typeVar = typeParams.get( i );
-      srcMethod.addTypeVar( typeVar );
+      srcMethod.addTypeVar( typeVar.copy() );
     }
 
     boolean hasThisClassAnnotation = hasThisClassAnnotation( method );
@@ -633,12 +774,12 @@ public class ManAugmentProvider extends PsiAugmentProvider
       // exclude @This or @ThisClass param
 
       SrcParameter param = params.get( i );
-      srcMethod.addParam( param.getSimpleName(), param.getType() );
+      srcMethod.addParam( param.getSimpleName(), param.getType().copy() );
     }
 
     for( Object throwType : method.getThrowTypes() )
     {
-      srcMethod.addThrowType( (SrcType)throwType );
+      srcMethod.addThrowType( ((SrcType)throwType).copy() );
     }
 
     srcMethod.body( new SrcStatementBlock()
@@ -1004,6 +1145,7 @@ public class ManAugmentProvider extends PsiAugmentProvider
   private static class ExtensionClassPsiListener implements PsiTreeChangeListener
   {
     private final Map<String, Long> _mapFqnToModCount = new ConcurrentHashMap<>();
+    private final Map<ManModule, Map<String, StubEntry>> _stubs = new ConcurrentWeakHashMap<>();
 
     private long getModCount( String fqn )
     {
@@ -1011,6 +1153,38 @@ public class ManAugmentProvider extends PsiAugmentProvider
       return modCount == null ? 0L : modCount;
     }
 
+    private SrcClass getStub( String extFqn, ManModule manModule )
+    {
+      // the stub resolves types outside the extension class, so any PSI change may affect it
+      long modCount = PsiModificationTracker.getInstance( manModule.getIjProject() ).getModificationCount();
+
+      Map<String, StubEntry> stubs = _stubs.computeIfAbsent( manModule, key -> new ConcurrentHashMap<>() );
+      StubEntry entry = stubs.get( extFqn );
+      if( entry != null && entry._modCount == modCount )
+      {
+        // the class is replaced when its file is reparsed or, if generated, when its resource changes
+        PsiClass cachedClass = entry._extClass.get();
+        if( cachedClass != null && cachedClass.isValid() )
+        {
+          return entry._stub;
+        }
+      }
+
+      // only look up the class on a miss
+      PsiClass extClass = StubBuilder.findClass( extFqn, manModule );
+      if( extClass == null )
+      {
+        return null;
+      }
+      SrcClass stub = new StubBuilder().make( extFqn, extClass, manModule, false );
+      if( stub == null )
+      {
+        return null;
+      }
+      stubs.put( extFqn, new StubEntry( stub, extClass, modCount ) );
+      return stub;
+    }
+
     @Override
     public void beforeChildAddition( @NotNull PsiTreeChangeEvent event )
     {
@@ -1105,4 +1279,18 @@ public class ManAugmentProvider extends PsiAugmentProvider
       }
     }
   }
+
+  private static class StubEntry
+  {
+    private final SrcClass _stub;
+    private final WeakReference<PsiClass> _extClass;
+    private final long _modCount;
+
+    private StubEntry( SrcClass stub, PsiClass extClass, long modCount )
+    {
+      _stub = stub;
+      _extClass = new WeakReference<>( extClass );
+      _modCount = modCount;
+    }
+  }
 }
@@ -21,6 +21,7 @@ package manifold.ij.extensions;
 
 import com.intellij.compiler.CompilerConfiguration;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.module.LanguageLevelUtil;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
@@ -31,17 +32,31 @@ import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.pom.java.LanguageLevel;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import manifold.ij.core.ManModule;
+import manifold.api.fs.IDirectory;
+import manifold.api.fs.IFile;
 import manifold.ij.core.ManProject;
-import manifold.ij.util.FileUtil;
+import manifold.ij.fs.IjDirectory;
+import manifold.ij.fs.IjFile;
+import manifold.ij.fs.IjFileSystem;
+import manifold.ij.fs.IjJarDirectory;
 import manifold.preprocessor.definitions.Definitions;
 import manifold.preprocessor.definitions.EnvironmentDefinitions;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -51,16 +66,93 @@ import org.jetbrains.annotations.Nullable;
 public class ManDefinitions extends Definitions
 {
   private static final String MODULE_INFO_FILE = "module-info.java";
+
+  /**
+   * Environment definitions per module and source root url. Language level changes and the creation or deletion of a
+   * module-info.java file define the project's modules anew, see {@link ManProject#reset()}, so entries of stale
+   * modules are never read again.
+   */
+  private static final Map<ManModule, Map<String, Map<String, String>>> ENV_DEFS = new ConcurrentWeakHashMap<>();
+
+  /**
+   * Content of the build.properties files the preprocessor reads, keyed by path. The base class reads each
+   * build.properties up the directory chain on every lexer restart, see {@link SourceFile}. Entries go stale when a
+   * file is saved, reloaded, created, deleted or moved, see {@link #buildPropertiesChanged(String)}.
+   */
+  private static final Map<String, BuildProperties> BUILD_PROPERTIES_TEXT = new ConcurrentHashMap<>();
+
   private final Project _project;
   private final VirtualFile _vFile;
 
   ManDefinitions( Project project, VirtualFile vFile )
   {
-    super( FileUtil.toIFile( project, vFile ) );
+    super( vFile == null ? null : new SourceFile( ManProject.manProjectFrom( project ).getFileSystem(), vFile ) );
     _project = project;
     _vFile = vFile;
   }
 
+  /**
+   * Call when the build.properties file at {@code path} is saved, reloaded, created or deleted.
+   */
+  public static void buildPropertiesChanged( String path )
+  {
+    BUILD_PROPERTIES_TEXT.computeIfPresent( path, ( p, props ) -> props.stale() );
+  }
+
+  /**
+   * Call when files are moved or renamed, any build.properties file may have a different path.
+   */
+  public static void buildPropertiesChanged()
+  {
+    BUILD_PROPERTIES_TEXT.replaceAll( ( p, props ) -> props.stale() );
+  }
+
+  /**
+   * @return The text of the build.properties file at {@code path} as the preprocessor last read it, empty if the file
+   * did not exist, or null if the preprocessor has not read it
+   */
+  public static String getLastReadBuildProperties( String path )
+  {
+    BuildProperties props = BUILD_PROPERTIES_TEXT.get( path );
+    return props == null ? null : props.text() == null ? "" : props.text();
+  }
+
+  private static BuildProperties getBuildProperties( String path, VirtualFile file )
+  {
+    BuildProperties props = BUILD_PROPERTIES_TEXT.get( path );
+    if( props != null && !props.isStale() )
+    {
+      return props;
+    }
+
+    // loaded outside the map, an entry made stale meanwhile is not overwritten
+    BuildProperties loaded = new BuildProperties( loadText( file ), false );
+    if( props == null )
+    {
+      BUILD_PROPERTIES_TEXT.putIfAbsent( path, loaded );
+    }
+    else
+    {
+      BUILD_PROPERTIES_TEXT.replace( path, props, loaded );
+    }
+    return loaded;
+  }
+
+  /**
+   * @return The file's text, or null if the file does not exist
+   */
+  private static String loadText( VirtualFile file )
+  {
+    try
+    {
+      return file != null && file.isValid() ? VfsUtilCore.loadText( file ) : null;
+    }
+    catch( IOException e )
+    {
+      return null;
+    }
+  }
+
   public VirtualFile getFile()
   {
     return _vFile;
@@ -97,7 +189,161 @@ public class ManDefinitions extends Definitions
   @Override
   protected Map<String, String> loadEnvironmentDefinitions()
   {
-    return new IdeEnvironmentDefinitions().getEnv();
+    // a Definitions is made per lexer restart, avoid probing the file system for module-info.java each time
+    ManModule module = _vFile == null ? null : ApplicationManager.getApplication()
+      .runReadAction( (Computable<ManModule>)() -> getModule( _vFile ) );
+    if( module == null )
+    {
+      return new IdeEnvironmentDefinitions().getEnv();
+    }
+
+    String sourceRoot = ApplicationManager.getApplication().runReadAction( (Computable<String>)() -> {
+      VirtualFile root = ProjectFileIndex.getInstance( _project ).getSourceRootForFile( _vFile );
+      return root == null ? "" : root.getUrl();
+    } );
+    Map<String, Map<String, String>> envByRoot = ENV_DEFS.computeIfAbsent( module, m -> new ConcurrentHashMap<>() );
+    Map<String, String> env = envByRoot.get( sourceRoot );
+    if( env == null )
+    {
+      // computed outside the map, the environment takes read actions which must not run while holding a bin lock
+      env = new IdeEnvironmentDefinitions().getEnv();
+      Map<String, String> existing = envByRoot.putIfAbsent( sourceRoot, env );
+      if( existing != null )
+      {
+        env = existing;
+      }
+    }
+    return new HashMap<>( env );
+  }
+
+  /**
+   * Entries are compared by identity, a stale entry replaced while the file was loaded is not overwritten.
+   */
+  private static final class BuildProperties
+  {
+    private final String _text;
+    private final boolean _stale;
+
+    private BuildProperties( String text, boolean stale )
+    {
+      _text = text;
+      _stale = stale;
+    }
+
+    /**
+     * @return The file's text, or null if the file does not exist
+     */
+    String text()
+    {
+      return _text;
+    }
+
+    boolean isStale()
+    {
+      return _stale;
+    }
+
+    BuildProperties stale()
+    {
+      return new BuildProperties( _text, true );
+    }
+  }
+
+  /**
+   * The source file the definitions are for, the base class finds the build.properties files via its parents.
+   */
+  private static class SourceFile extends IjFile
+  {
+    SourceFile( IjFileSystem fs, VirtualFile file )
+    {
+      super( fs, file );
+    }
+
+    @Override
+    public IDirectory getParent()
+    {
+      return SourceDir.wrap( super.getParent() );
+    }
+  }
+
+  private static class SourceDir extends IjDirectory
+  {
+    private static IDirectory wrap( IDirectory dir )
+    {
+      return dir instanceof IjDirectory && !(dir instanceof IjJarDirectory) && ((IjDirectory)dir).getVirtualFile() != null
+        ? new SourceDir( ((IjDirectory)dir).getFileSystem(), ((IjDirectory)dir).getVirtualFile() )
+        : dir;
+    }
+
+    private SourceDir( IjFileSystem fs, VirtualFile dir )
+    {
+      super( fs, dir );
+    }
+
+    @Override
+    public IFile file( String relativePath )
+    {
+      if( BUILD_PROPERTIES.equalsIgnoreCase( relativePath ) )
+      {
+        VirtualFile dir = getVirtualFile();
+        VirtualFile file = dir.findChild( relativePath );
+        return file != null
+          ? new BuildPropertiesFile( getFileSystem(), file )
+          : new BuildPropertiesFile( getFileSystem(), dir.getPath() + '/' + relativePath );
+      }
+      return super.file( relativePath );
+    }
+
+    @Override
+    public IDirectory getParent()
+    {
+      return wrap( super.getParent() );
+    }
+  }
+
+  /**
+   * Reads from the file's document if it is open, otherwise from {@link #BUILD_PROPERTIES_TEXT}.
+   */
+  private static class BuildPropertiesFile extends IjFile
+  {
+    private final String _file;
+
+    BuildPropertiesFile( IjFileSystem fs, VirtualFile file )
+    {
+      super( fs, file );
+      _file = file.getPath();
+    }
+
+    BuildPropertiesFile( IjFileSystem fs, String file )
+    {
+      super( fs, file );
+      _file = file;
+    }
+
+    @Override
+    public boolean exists()
+    {
+      return getBuildProperties( _file, getVirtualFile() ).text() != null;
+    }
+
+    @Override
+    public InputStream openInputStream() throws IOException
+    {
+      VirtualFile file = getVirtualFile();
+      if( file != null && FileDocumentManager.getInstance().getCachedDocument( file ) != null )
+      {
+        // unsaved changes
+        return super.openInputStream();
+      }
+
+      String text = getBuildProperties( _file, file ).text();
+      if( text == null )
+      {
+        throw new FileNotFoundException( _file );
+      }
+      return new ByteArrayInputStream( text.getBytes(
+        file != null && file.isCharsetSet() ? file.getCharset() : StandardCharsets.UTF_8 ) );
+    }
   }
 
   private class IdeEnvironmentDefinitions extends EnvironmentDefinitions
@@ -37,6 +37,7 @@ import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtil;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -94,63 +95,72 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return true;
     }
 
-    if( hi.getDescription() == null )
+    String description = hi.getDescription();
+    if( description == null )
     {
       return true;
     }
 
+    // classify the description once, filters are only tried if their trigger matches
+    Set<Trigger> triggers = Trigger.of( description );
+    if( triggers.isEmpty() && hi.getSeverity() != HighlightSeverity.ERROR )
+    {
+      // no filter applies to this warning
+      return true;
+    }
+
     //
     // Handle Warnings OR Errors...
     //
 
-    if( filterComparedUsingEquals( hi, file ) )
+    if( triggers.contains( Trigger.COMPARED_USING_EQUALS ) && filterComparedUsingEquals( hi, file ) )
     {
       return false;
     }
 
-    if( filterCanBeReplacedWith( hi, file ) )
+    if( triggers.contains( Trigger.CAN_BE_REPLACED ) && filterCanBeReplacedWith( hi, file ) )
     {
       return false;
     }
 
-    if( filterCastingStructuralInterfaceWarning( hi, file ) )
+    if( triggers.contains( Trigger.CASTING ) && filterCastingStructuralInterfaceWarning( hi, file ) )
     {
       return false;
     }
 
-    if( filterArrayIndexIsOutOfBounds( hi, file ) )
+    if( triggers.contains( Trigger.ARRAY_INDEX_OUT_OF_BOUNDS ) && filterArrayIndexIsOutOfBounds( hi, file ) )
     {
       return false;
     }
 
-    if( filterTemplateUnnecessarySemicolon( hi, file ) )
+    if( triggers.contains( Trigger.UNNECESSARY_SEMICOLON ) && filterTemplateUnnecessarySemicolon( hi, file ) )
     {
       return false;
     }
 
-    if( filterCallToToStringOnArray( hi, file ) )
+    if( triggers.contains( Trigger.TO_STRING_ON_ARRAY ) && filterCallToToStringOnArray( hi, file ) )
     {
       return false;
     }
 
-    if( filterUpdatedButNeverQueried( hi, file ) )
+    if( triggers.contains( Trigger.NEVER_USED ) && filterUpdatedButNeverQueried( hi, file ) )
     {
       return false;
     }
 
     PsiElement firstElem = file.findElementAt( hi.getStartOffset() );
 
-    if( filterFieldIsNeverUsed( hi, firstElem ) )
+    if( triggers.contains( Trigger.NEVER_USED ) && filterFieldIsNeverUsed( hi, firstElem ) )
     {
       return false;
     }
 
-    if( filterNullMarkedFieldInitializationWarning( hi, firstElem ) )
+    if( triggers.contains( Trigger.NULL_MARKED ) && filterNullMarkedFieldInitializationWarning( hi, firstElem ) )
     {
       return false;
     }
 
-    if( filterSynchronizationOnPropertyFieldWarning( hi, firstElem ) )
+    if( triggers.contains( Trigger.SYNCHRONIZATION ) && filterSynchronizationOnPropertyFieldWarning( hi, firstElem ) )
     {
       return false;
     }
@@ -163,7 +173,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
     // Handle only Errors...
     //
 
-    if( filterUnhandledCheckedExceptions( hi, file ) )
+    if( triggers.contains( Trigger.UNHANDLED_EXCEPTION ) && filterUnhandledCheckedExceptions( hi, file ) )
     {
       return false;
     }
@@ -179,7 +189,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return true;
     }
 
-    if( filterAmbiguousMethods( hi, firstElem ) )
+    if( triggers.contains( Trigger.AMBIGUOUS_METHOD ) && filterAmbiguousMethods( hi, firstElem ) )
     {
       return false;
     }
@@ -190,12 +200,12 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return true;
     }
 
-    if( filterIllegalEscapedCharDollars( hi, firstElem, elem ) )
+    if( triggers.contains( Trigger.ILLEGAL_ESCAPE ) && filterIllegalEscapedCharDollars( hi, firstElem, elem ) )
     {
       return false;
     }
 
-    if( filterCannotAssignToFinalIfJailbreak( hi, firstElem ) )
+    if( triggers.contains( Trigger.ASSIGN_TO_FINAL ) && filterCannotAssignToFinalIfJailbreak( hi, firstElem ) )
     {
       return false;
     }
@@ -205,82 +215,91 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
       return false;
     }
 
-    if( filterOperatorCannotBeApplied( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.CANNOT_BE_APPLIED ) )
     {
-      return false;
-    }
+      if( filterOperatorCannotBeApplied( hi, elem, firstElem ) )
+      {
+        return false;
+      }
 
-    if( filterPrefixExprCannotBeApplied( hi, elem, firstElem ) ||
-        filterPostfixExprCannotBeApplied( hi, elem, firstElem ) )
-    {
-      return false;
+      if( filterPrefixExprCannotBeApplied( hi, elem, firstElem ) ||
+          filterPostfixExprCannotBeApplied( hi, elem, firstElem ) )
+      {
+        return false;
+      }
     }
 
-    if( filterIncompatibleTypesWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.INCOMPATIBLE_TYPES ) &&
+        filterIncompatibleTypesWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterOperatorCannotBeAppliedToWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.CANNOT_BE_APPLIED ) )
     {
-      return false;
-    }
+      if( filterOperatorCannotBeAppliedToWithCompoundAssignmentOperatorOverload( hi, elem, firstElem ) )
+      {
+        return false;
+      }
 
-    if( filterOperatorCannotBeAppliedToWithBinaryOperatorOverload( hi, elem ) )
-    {
-      return false;
+      if( filterOperatorCannotBeAppliedToWithBinaryOperatorOverload( hi, elem ) )
+      {
+        return false;
+      }
     }
 
-    if( filterNotInitializedOnChainedAssignment( hi, elem ) )
+    if( (triggers.contains( Trigger.NOT_INITIALIZED ) || triggers.contains( Trigger.CANNOT_BE_APPLIED ) ||
+         triggers.contains( Trigger.VARIABLE_EXPECTED )) &&
+        filterNotInitializedOnChainedAssignment( hi, elem ) )
     {
       return false;
     }
 
     // handle indexed operator overloading
-    if( filterArrayTypeExpected( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.ARRAY_TYPE_EXPECTED ) && filterArrayTypeExpected( hi, elem, firstElem ) )
     {
       return false;
     }
-    if( filterVariableExpected( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.VARIABLE_EXPECTED ) && filterVariableExpected( hi, elem, firstElem ) )
     {
       return false;
     }
-    if( filterIncompatibleTypesWithArrayAccess( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.INCOMPATIBLE_TYPES ) && filterIncompatibleTypesWithArrayAccess( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterAnyAnnoTypeError( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.INCOMPATIBLE_TYPES ) && filterAnyAnnoTypeError( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterIncompatibleReturnType( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.INCOMPATIBLE_RETURN_TYPE ) && filterIncompatibleReturnType( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterForeachExpressionErrors( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.FOREACH ) && filterForeachExpressionErrors( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterInnerClassReferenceError( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.STATIC_CONTEXT ) && filterInnerClassReferenceError( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterUsageOfApiNewerThanError( hi, elem, firstElem ) )
+    if( triggers.contains( Trigger.USAGE_OF_NEWER_API ) && filterUsageOfApiNewerThanError( hi, elem, firstElem ) )
     {
       return false;
     }
 
-    if( filterParamsClassErrors( hi, elem, firstElem ) )
+    if( filterParamsClassErrors( hi, elem, triggers.contains( Trigger.PARAMS_CLASS ) ) )
     {
       return false;
     }
 
-    if( filterFieldIsNotInitializedInInterfaceError( hi, elem ) )
+    if( triggers.contains( Trigger.NOT_INITIALIZED ) && filterFieldIsNotInitializedInInterfaceError( hi, elem ) )
     {
       return false;
     }
@@ -289,7 +308,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
     //## structural interface extensions cannot be added to the psiClass, so for now we suppress "incompatible type
     //## errors" or similar involving a structural interface extension :(
     //##
-    Boolean x = acceptInterfaceError( hi, firstElem, elem );
+    Boolean x = acceptInterfaceError( hi, firstElem, elem, triggers );
     if( x != null )
     {
       return x;
@@ -298,6 +317,75 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
     return true;
   }
 
+  /**
+   * Phrases in highlight descriptions the filters apply to. A trigger may match more descriptions than its filters
+   * handle, the filters still check the description, but a filter is never tried if its trigger does not match.
+   */
+  private enum Trigger
+  {
+    COMPARED_USING_EQUALS( false, "compared using '=='", "compared using '!='", "使用 '==' 而不是", "使用 '!=' 而不是" ),
+    CAN_BE_REPLACED( false, "can be replaced with", "可被替换为" ),
+    CASTING( true, "Casting '", "将 '" ),
+    ARRAY_INDEX_OUT_OF_BOUNDS( true, "Array index is out of bounds", "数组索引超出范围" ),
+    UNNECESSARY_SEMICOLON( false, "Unnecessary semicolon", "不必要的分号" ),
+    TO_STRING_ON_ARRAY( false, "Call to 'toString()' on array" ),
+    NEVER_USED( false, "is never used", "updated, but never queried", "更新，但从未被查询" ),
+    NULL_MARKED( true, "@NullMarked fields must be initialized" ),
+    SYNCHRONIZATION( true, "Synchronization on a non-final field '" ),
+    UNHANDLED_EXCEPTION( false, "Unhandled exception", "未处理的异常", "未处理 异常" ),
+    AMBIGUOUS_METHOD( true, "Ambiguous method call", "方法调用不明确" ),
+    ILLEGAL_ESCAPE( false, "Illegal escape character", "字符串文字中的非法转义字符" ),
+    ASSIGN_TO_FINAL( true, "Cannot assign a value to final variable", "无法将值赋给 final 变量" ),
+    CANNOT_BE_APPLIED( false, "cannot be applied to", "不能应用于" ),
+    INCOMPATIBLE_TYPES( false, "Incompatible types", "不兼容的类型" ),
+    NOT_INITIALIZED( false, " might not have been initialized" ),
+    VARIABLE_EXPECTED( true, "Variable expected", "应为变量" ),
+    ARRAY_TYPE_EXPECTED( true, "Array type expected", "应为数组类型" ),
+    INCOMPATIBLE_RETURN_TYPE( false, "incompatible return type", "返回类型不兼容" ),
+    FOREACH( false, "foreach not applicable to type", "oreach 不适用于类型" ),
+    STATIC_CONTEXT( false, "cannot be referenced from a static context",
+      "Static method may be invoked on containing interface class only", "Expected class or package" ),
+    USAGE_OF_NEWER_API( true, "Usage of API documented as" ),
+    PARAMS_CLASS( false, "<lambda parameter>", "$" ),
+    NOT_WITHIN_BOUND( false, "is not within its bound; should " );
+
+    private static final Trigger[] VALUES = values();
+
+    private final boolean _prefix;
+    private final String[] _phrases;
+
+    Trigger( boolean prefix, String... phrases )
+    {
+      _prefix = prefix;
+      _phrases = phrases;
+    }
+
+    private boolean matches( String description )
+    {
+      for( String phrase: _phrases )
+      {
+        if( _prefix ? description.startsWith( phrase ) : description.contains( phrase ) )
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static Set<Trigger> of( String description )
+    {
+      EnumSet<Trigger> triggers = EnumSet.noneOf( Trigger.class );
+      for( Trigger trigger: VALUES )
+      {
+        if( trigger.matches( description ) )
+        {
+          triggers.add( trigger );
+        }
+      }
+      return triggers;
+    }
+  }
+
   private boolean filterTemplateUnnecessarySemicolon( HighlightInfo hi, PsiFile file )
   {
     String description = hi.getDescription();
@@ -709,10 +797,22 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   }
 
   private static Pattern paramsClassPattern = Pattern.compile( "\\$([a-zA-Z_$][a-zA-Z_$0-9]*)_(_[a-zA-Z_$][a-zA-Z_$0-9]*)" );
-  private boolean filterParamsClassErrors( HighlightInfo hi, PsiElement elem, PsiElement firstElem )
+  private boolean filterParamsClassErrors( HighlightInfo hi, PsiElement elem, boolean mentionsParamsClass )
   {
+    boolean isAnnotation = elem instanceof PsiAnnotation;
+    if( !mentionsParamsClass && !isAnnotation )
+    {
+      // neither case below can apply, avoid walking the tree
+      return false;
+    }
+
     if( containedInTupleExpr( elem, elem ) )
     {
+      if( !mentionsParamsClass )
+      {
+        return false;
+      }
+
       if( hi.getDescription().contains( "<lambda parameter>" ) )
       {
         // bogus error wrt lambda arg to optional params method
@@ -727,7 +827,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
     }
 
     // allow for @Override on opt params method if it has at least on telescoping method that that overrides
-    if( elem instanceof PsiAnnotation &&
+    if( isAnnotation &&
       Override.class.getTypeName().equals( ((PsiAnnotation)elem).getQualifiedName() ) )
     {
       PsiMethod enclosingMethod = RefactoringUtil.getEnclosingMethod( elem );
@@ -1035,7 +1135,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
   }
 
   @Nullable
-  private Boolean acceptInterfaceError( @NotNull HighlightInfo hi, PsiElement firstElem, PsiElement elem )
+  private Boolean acceptInterfaceError( @NotNull HighlightInfo hi, PsiElement firstElem, PsiElement elem, Set<Trigger> triggers )
   {
     if( elem instanceof PsiTypeCastExpression )
     {
@@ -1049,7 +1149,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
 //        }
       }
     }
-    else if( isTypeParameterStructural( hi, firstElem ) )
+    else if( triggers.contains( Trigger.NOT_WITHIN_BOUND ) && isTypeParameterStructural( hi, firstElem ) )
     {
       return false;
     }
@@ -1069,8 +1169,7 @@ public class ManHighlightInfoFilter implements HighlightInfoFilter
         }
       }
     }
-    else if( hi.getDescription().contains( "cannot be applied to" ) ||
-             hi.getDescription().contains( "不能应用于" ) )
+    else if( triggers.contains( Trigger.CANNOT_BE_APPLIED ) )
     {
       PsiMethodCallExpression methodCall = findMethodCall( firstElem );
       if( methodCall != null )
@@ -35,7 +35,10 @@ import com.intellij.psi.scope.NameHint;
 import com.intellij.psi.scope.PsiScopeProcessor;
 import com.intellij.psi.scope.util.PsiScopesUtil;
 import com.intellij.psi.tree.IElementType;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTypesUtil;
 import com.intellij.util.Function;
 
@@ -55,6 +58,10 @@ public class ManJavaResolveCache extends JavaResolveCache
   private static final String COMPARE_TO_USING = "compareToUsing";
   public static final String INDEXED_GET = "get";
   public static final String INDEXED_SET = "set";
+  public static final String UNARY_MINUS = "unaryMinus";
+  public static final String UNARY_INV = "inv";
+  public static final String UNARY_NOT = "not";
+  private static final Key<CachedValue<Map<String, PsiMethod[]>>> KEY_OPERATOR_METHODS = Key.create( "KEY_OPERATOR_METHODS" );
   private static Map<IElementType, String> BINARY_OP_TO_NAME = new HashMap<IElementType, String>()
   {{
     put( JavaTokenType.PLUS, "plus" );
@@ -89,6 +96,16 @@ public class ManJavaResolveCache extends JavaResolveCache
     put( JavaTokenType.MINUSMINUS, "dec" );
     // note ==, !=, >, >=, <, <=  are covered via IComparableWith**
   }};
+  private static final Set<String> OPERATOR_METHOD_NAMES = new HashSet<String>( BINARY_OP_TO_NAME.values() )
+  {{
+    add( COMPARE_TO );
+    add( COMPARE_TO_USING );
+    add( INDEXED_GET );
+    add( INDEXED_SET );
+    add( UNARY_MINUS );
+    add( UNARY_INV );
+    add( UNARY_NOT );
+  }};
   private static ThreadLocal<Set<PsiExpression>> _threadLocalVisited = ThreadLocal.withInitial( () -> new HashSet<>() );
 
   public ManJavaResolveCache( Project p )
@@ -334,7 +351,7 @@ public class ManJavaResolveCache extends JavaResolveCache
       return null;
     }
 
-    PsiMethod[] members = psiClassLeft.getAllMethods();
+    PsiMethod[] members = getOperatorMethods( psiClassLeft, opName );
 
     PsiType operationReturnType = getBinaryOperationReturnType( opName, left, right, members, context );
     if( operationReturnType != null )
@@ -350,7 +367,7 @@ public class ManJavaResolveCache extends JavaResolveCache
       {
         if( iface instanceof PsiClassType )
         {
-          operationReturnType = getBinaryOperationReturnType( opName, iface, right, psiIface.getAllMethods(), context );
+          operationReturnType = getBinaryOperationReturnType( opName, iface, right, getOperatorMethods( psiIface, opName ), context );
           if( operationReturnType != null )
           {
             return operationReturnType;
@@ -392,7 +409,7 @@ public class ManJavaResolveCache extends JavaResolveCache
       return null;
     }
 
-    PsiMethod[] members = psiClassLeft.getAllMethods();
+    PsiMethod[] members = getOperatorMethods( psiClassLeft, opName );
 
     PsiMethod method = getBinaryOperatorMethod( opName, left, right, members, context );
     if( method != null )
@@ -408,7 +425,7 @@ public class ManJavaResolveCache extends JavaResolveCache
       {
         if( iface instanceof PsiClassType )
         {
-          method = getBinaryOperatorMethod( opName, iface, right, psiIface.getAllMethods(), context );
+          method = getBinaryOperatorMethod( opName, iface, right, getOperatorMethods( psiIface, opName ), context );
           if( method != null )
           {
             return method;
@@ -420,6 +437,44 @@ public class ManJavaResolveCache extends JavaResolveCache
     return null;
   }
 
+  /**
+   * @return The methods of {@code psiClass}, including inherited and extension methods, named {@code opName}. Operator
+   * method names are served from an index of {@link PsiClass#getAllMethods()} cached on the class and dropped on any PSI
+   * change, other names are found directly.
+   */
+  public static PsiMethod[] getOperatorMethods( @NotNull PsiClass psiClass, @Nullable String opName )
+  {
+    if( opName == null )
+    {
+      return PsiMethod.EMPTY_ARRAY;
+    }
+    if( !OPERATOR_METHOD_NAMES.contains( opName ) )
+    {
+      return psiClass.findMethodsByName( opName, true );
+    }
+
+    PsiMethod[] methods = CachedValuesManager.getCachedValue( psiClass, KEY_OPERATOR_METHODS,
+      () -> CachedValueProvider.Result.create( indexOperatorMethods( psiClass ), PsiModificationTracker.MODIFICATION_COUNT ) )
+      .get( opName );
+    return methods == null ? PsiMethod.EMPTY_ARRAY : methods;
+  }
+
+  private static Map<String, PsiMethod[]> indexOperatorMethods( PsiClass psiClass )
+  {
+    Map<String, List<PsiMethod>> byName = new HashMap<>();
+    for( PsiMethod m: psiClass.getAllMethods() )
+    {
+      String name = m.getName();
+      if( OPERATOR_METHOD_NAMES.contains( name ) )
+      {
+        byName.computeIfAbsent( name, k -> new ArrayList<>( 2 ) ).add( m );
+      }
+    }
+    Map<String, PsiMethod[]> index = new HashMap<>();
+    byName.forEach( ( name, methods ) -> index.put( name, methods.toArray( PsiMethod.EMPTY_ARRAY ) ) );
+    return index;
+  }
+
   @Nullable
   private static PsiType getGenericBinaryOperationReturnType( String opName, PsiType left, PsiType right, PsiExpression context )
   {
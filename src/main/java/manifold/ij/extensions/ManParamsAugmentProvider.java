@@ -34,7 +34,6 @@ import com.intellij.psi.util.CachedValue;
 import com.intellij.psi.util.CachedValueProvider;
 import com.intellij.psi.util.CachedValuesManager;
 import manifold.ij.core.ManProject;
-import manifold.util.ReflectUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -52,6 +51,10 @@ public class ManParamsAugmentProvider extends PsiAugmentProvider
   static final Key<CachedValue<List<PsiClass>>> KEY_CACHED_PARAM_CLASS_AUGMENTS = new Key<>( "KEY_CACHED_PARAM_CLASS_AUGMENTS" );
   static final Key<CachedValue<List<PsiMethod>>> KEY_CACHED_PARAM_METHOD_AUGMENTS = new Key<>( "KEY_CACHED_PARAM_METHOD_AUGMENTS" );
 
+  private static final Map<Class<? extends PsiElement>, Key<?>> CACHE_KEYS = Map.of(
+    PsiMethod.class, KEY_CACHED_PARAM_METHOD_AUGMENTS,
+    PsiClass.class, KEY_CACHED_PARAM_CLASS_AUGMENTS );
+
   @SuppressWarnings( "deprecation" )
   @NotNull
   public <E extends PsiElement> List<E> getAugments( @NotNull PsiElement element, @NotNull Class<E> cls )
@@ -62,6 +65,10 @@ public class ManParamsAugmentProvider extends PsiAugmentProvider
   @NotNull
   public <E extends PsiElement> List<E> getAugments( @NotNull PsiElement element, @NotNull Class<E> cls, String nameHint )
   {
+    if( ApplicationManager.getApplication().isReadAccessAllowed() )
+    {
+      return _getAugments( element, cls );
+    }
     return ApplicationManager.getApplication().runReadAction( (Computable<List<E>>)() -> _getAugments( element, cls ) );
   }
 
@@ -116,18 +123,27 @@ public class ManParamsAugmentProvider extends PsiAugmentProvider
 //    return new ArrayList<>( (Collection<? extends E>)augFeatures.values() );
 
 // Cached:
-    ReflectUtil.FieldRef DO_CHECKS = ReflectUtil.field( "com.intellij.util.CachedValueStabilityChecker", "DO_CHECKS" );
-    try { if( (boolean)DO_CHECKS.getStatic() ) DO_CHECKS.setStatic( false ); } catch( Throwable ignore ){}
+    Key<CachedValue<List<E>>> key = AugmentCacheUtil.getCacheKey( cls, CACHE_KEYS );
+    if( key == null )
+    {
+      return Collections.emptyList();
+    }
+    List<E> cached = AugmentCacheUtil.getUpToDateAugments( psiClass, key );
+    if( cached != null )
+    {
+      // the common case, a cache hit costs no allocations
+      return cached;
+    }
+
+    AugmentCacheUtil.disableStabilityChecks();
     if( PsiMethod.class.isAssignableFrom( cls ) )
     {
-      //noinspection unchecked
-      return getCachedAugments( psiClass, (Key)KEY_CACHED_PARAM_METHOD_AUGMENTS,
+      return getCachedAugments( psiClass, key,
         augFeatures -> addMethods( psiClass, augFeatures ) );
     }
     else if( PsiClass.class.isAssignableFrom( cls ) )
     {
-      //noinspection unchecked
-      return getCachedAugments( psiClass, (Key)KEY_CACHED_PARAM_CLASS_AUGMENTS,
+      return getCachedAugments( psiClass, key,
         augFeatures -> addParamsClasses( psiClass, augFeatures ) );
     }
     return Collections.emptyList();
@@ -12,11 +12,14 @@ import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.platform.syntax.SyntaxElementType;
 import com.intellij.platform.syntax.lexer.Lexer;
 import com.intellij.pom.java.LanguageLevel;
+import com.intellij.util.containers.CollectionFactory;
 import manifold.ext.rt.api.Jailbreak;
 import manifold.ij.util.WhatsActiveUtil;
 import manifold.ij.util.ReparseUtil;
@@ -28,12 +31,15 @@ import manifold.preprocessor.statement.FileStatement;
 import manifold.preprocessor.statement.IfStatement;
 import manifold.preprocessor.statement.SourceStatement;
 import manifold.preprocessor.statement.Statement;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
 import manifold.util.concurrent.LocklessLazyVar;
 import org.jetbrains.annotations.NotNull;
 import org.jspecify.annotations.NonNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.intellij.java.syntax.element.JavaSyntaxTokenType.*;
 import static manifold.preprocessor.TokenType.*;
@@ -46,6 +52,19 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
   private static final LocklessLazyVar<boolean[]> PREPROCESSOR_DUMB_MODE = LocklessLazyVar.make(() ->
     new boolean[]{PropertiesComponent.getInstance().getBoolean(MANIFOLD_PREPROCESSOR_DUMB_MODE)});
 
+  private static final String NO_FQN = "";
+  /**
+   * Fqns by lexer buffer. Lexers of a document share the document's immutable text until it is modified, so a buffer is
+   * effectively a document at a modification stamp, and the platform creates several lexers per stamp.
+   */
+  private static final Map<CharSequence, String> FQN_BY_BUFFER = CollectionFactory.createConcurrentWeakIdentityMap();
+  /** Files by fqn per project, an entry is verified before it is used. A closed project's entries go with it. */
+  private static final Map<Project, Map<String, VirtualFile>> FILE_BY_FQN = new ConcurrentWeakHashMap<>();
+  /** Fqns no source file was found for, by the stamp of the search, see {@link #getSearchStamp()} */
+  private static final Map<String, Long> MISSED_FQNS = new ConcurrentHashMap<>();
+  /** Directives lex as comments while extracting an fqn, avoids recursion via {@link #makeDefinitions()} */
+  private static final ThreadLocal<Boolean> EXTRACTING_FQN = ThreadLocal.withInitial( () -> false );
+
   private @Jailbreak JavaLexer _lexer;
   private Project _project;
   private VirtualFile _vfile;
@@ -91,7 +110,22 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
   {
     CharSequence content = _lexer.getBufferSequence();
     VirtualFile vfile;
-    String fqn = extractFqn( content );
+    String fqn = FQN_BY_BUFFER.get( content );
+    if( fqn == null )
+    {
+      // extracted outside the map, lexing the buffer must not hold a bin lock
+      String extracted = extractFqn( content );
+      fqn = extracted == null ? NO_FQN : extracted;
+      String existing = FQN_BY_BUFFER.putIfAbsent( content, fqn );
+      if( existing != null )
+      {
+        fqn = existing;
+      }
+    }
+    if( fqn.isEmpty() )
+    {
+      fqn = null;
+    }
     if( fqn != null )
     {
       vfile = findFile( fqn );
@@ -118,6 +152,54 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
   private VirtualFile findFile( String fqn )
   {
     String relPath = fqn.replace( '.', '/' ) + ".java";
+    for( Project project : ProjectManager.getInstance().getOpenProjects() )
+    {
+      Map<String, VirtualFile> files = FILE_BY_FQN.get( project );
+      VirtualFile file = files == null ? null : files.get( fqn );
+      if( file != null )
+      {
+        if( file.isValid() && file.getPath().endsWith( '/' + relPath ) )
+        {
+          _project = project;
+          return file;
+        }
+        files.remove( fqn, file );
+      }
+    }
+
+    // a miss stands until files are created, moved or renamed, or source roots change
+    long stamp = getSearchStamp();
+    Long missed = MISSED_FQNS.get( fqn );
+    if( missed != null && missed == stamp )
+    {
+      return null;
+    }
+
+    VirtualFile file = searchFile( relPath );
+    if( file != null )
+    {
+      FILE_BY_FQN.computeIfAbsent( _project, __ -> new ConcurrentHashMap<>() ).put( fqn, file );
+      MISSED_FQNS.remove( fqn );
+    }
+    else
+    {
+      MISSED_FQNS.put( fqn, stamp );
+    }
+    return file;
+  }
+
+  private static long getSearchStamp()
+  {
+    long stamp = VirtualFileManager.getInstance().getStructureModificationCount();
+    for( Project project : ProjectManager.getInstance().getOpenProjects() )
+    {
+      stamp += ProjectRootManager.getInstance( project ).getModificationCount();
+    }
+    return stamp;
+  }
+
+  private VirtualFile searchFile( String relPath )
+  {
     for( Project project : ProjectManager.getInstance().getOpenProjects() )
     {
       for( Module module : ModuleManager.getInstance( project ).getModules() )
@@ -165,7 +247,7 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
   }
 
   private boolean makeDirective() {
-    if( isDumbPreprocessorMode() || StringUtil.endsWith( _lexer.myBuffer, "extractFqn_" ) )
+    if( isDumbPreprocessorMode() || EXTRACTING_FQN.get() )
     {
       return makeDumbDirective();
     }
@@ -332,8 +414,19 @@ public class ManPreprocessorJavaLexerHook implements JavaLexerHook
   // use lexer to derive fqn from source file
   private static String extractFqn( CharSequence text )
   {
-    // add marker to short-circuit lexer infinitum
-    StringBuilder sb = new StringBuilder( text ).append( "extractFqn_" );
+    // short-circuit lexer infinitum
+    EXTRACTING_FQN.set( true );
+    try
+    {
+      return _extractFqn( text );
+    }
+    finally
+    {
+      EXTRACTING_FQN.set( false );
+    }
+  }
+  private static String _extractFqn( CharSequence sb )
+  {
     Lexer lexer = new JavaLexer( LanguageLevel.HIGHEST );
     lexer.start( sb );
 
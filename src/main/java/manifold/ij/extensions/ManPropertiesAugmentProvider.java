@@ -40,7 +40,6 @@ import manifold.ij.core.ManProject;
 import manifold.ij.psi.ManLightFieldBuilder;
 import manifold.ij.psi.ManLightModifierListImpl;
 import manifold.ij.psi.ManPsiElementFactory;
-import manifold.util.ReflectUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -61,6 +60,10 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
   static final Key<CachedValue<List<PsiField>>> KEY_CACHED_PROP_FIELD_AUGMENTS = new Key<>( "KEY_CACHED_PROP_FIELD_AUGMENTS" );
   static final Key<CachedValue<List<PsiMethod>>> KEY_CACHED_PROP_METHOD_AUGMENTS = new Key<>( "KEY_CACHED_PROP_METHOD_AUGMENTS" );
 
+  private static final Map<Class<? extends PsiElement>, Key<?>> CACHE_KEYS = Map.of(
+    PsiMethod.class, KEY_CACHED_PROP_METHOD_AUGMENTS,
+    PsiField.class, KEY_CACHED_PROP_FIELD_AUGMENTS );
+
   @SuppressWarnings( "deprecation" )
   @NotNull
   public <E extends PsiElement> List<E> getAugments( @NotNull PsiElement element, @NotNull Class<E> cls )
@@ -71,6 +74,10 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
   @NotNull
   public <E extends PsiElement> List<E> getAugments( @NotNull PsiElement element, @NotNull Class<E> cls, String nameHint )
   {
+    if( ApplicationManager.getApplication().isReadAccessAllowed() )
+    {
+      return _getAugments( element, cls );
+    }
     return ApplicationManager.getApplication().runReadAction( (Computable<List<E>>)() -> _getAugments( element, cls ) );
   }
 
@@ -146,18 +153,27 @@ public class ManPropertiesAugmentProvider extends PsiAugmentProvider
 //    return new ArrayList<>( (Collection<? extends E>)augFeatures.values() );
 
 // Cached:
-    ReflectUtil.FieldRef DO_CHECKS = ReflectUtil.field( "com.intellij.util.CachedValueStabilityChecker", "DO_CHECKS" );
-    try { if( (boolean)DO_CHECKS.getStatic() ) DO_CHECKS.setStatic( false ); } catch( Throwable ignore ){}
+    Key<CachedValue<List<E>>> key = AugmentCacheUtil.getCacheKey( cls, CACHE_KEYS );
+    if( key == null )
+    {
+      return Collections.emptyList();
+    }
+    List<E> cached = AugmentCacheUtil.getUpToDateAugments( psiClass, key );
+    if( cached != null )
+    {
+      // the common case, a cache hit costs no allocations
+      return cached;
+    }
+
+    AugmentCacheUtil.disableStabilityChecks();
     if( PsiMethod.class.isAssignableFrom( cls ) )
     {
-      //noinspection unchecked
-      return getCachedAugments( psiClass, (Key)KEY_CACHED_PROP_METHOD_AUGMENTS,
+      return getCachedAugments( psiClass, key,
         augFeatures -> addMethods( psiClass, augFeatures ) );
     }
     else if( PsiField.class.isAssignableFrom( cls ) )
     {
-      //noinspection unchecked
-      return getCachedAugments( psiClass, (Key)KEY_CACHED_PROP_FIELD_AUGMENTS, augFeatures -> {
+      return getCachedAugments( psiClass, key, augFeatures -> {
         recreateNonbackingPropertyFields( psiClass, augFeatures );
         inferPropertyFieldsFromAccessors( psiClass, augFeatures );
       } );
@@ -30,6 +30,7 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -157,19 +158,57 @@ public class ManRefreshListener
 
   private void _notify( IResource res, RefreshKind kind  )
   {
-    if( !(res instanceof IFile) )
+    if( isModuleInfo( res ) )
     {
+      _manProject.reset();
       return;
     }
 
-    if( !(((IFile)res).getPhysicalFile() instanceof IjFile) )
+    Map<IModule, List<RefreshRequest>> requests = new LinkedHashMap<>();
+    collectRequests( res, kind, requests );
+    requests.values().forEach( moduleRequests -> moduleRequests.forEach( this::notify ) );
+  }
+
+  /**
+   * Notify listeners of a batch of changes, see {@link FileModificationManager}. Requests are grouped by module so each
+   * module's requests are dispatched together, in the order of the changes.
+   *
+   * @param changes The changed resources, each with its coalesced sequence of changes
+   */
+  void refresh( Map<IResource, List<RefreshKind>> changes )
+  {
+    SlowOperationsUtil.allowSlowOperation( "manifold.generic", () -> _refresh( changes ) );
+  }
+
+  private void _refresh( Map<IResource, List<RefreshKind>> changes )
+  {
+    Map<IModule, List<RefreshRequest>> requests = new LinkedHashMap<>();
+    for( Map.Entry<IResource, List<RefreshKind>> entry: changes.entrySet() )
+    {
+      IResource res = entry.getKey();
+      if( isModuleInfo( res ) )
+      {
+        // resets the whole project, nothing else in the batch matters
+        _manProject.reset();
+        return;
+      }
+      for( RefreshKind kind: entry.getValue() )
+      {
+        collectRequests( res, kind, requests );
+      }
+    }
+    requests.values().forEach( moduleRequests -> moduleRequests.forEach( this::notify ) );
+  }
+
+  private void collectRequests( IResource res, RefreshKind kind, Map<IModule, List<RefreshRequest>> requests )
+  {
+    if( !(res instanceof IFile) )
     {
       return;
     }
 
-    if( isModuleInfo( res ) )
+    if( !(((IFile)res).getPhysicalFile() instanceof IjFile) )
     {
-      _manProject.reset();
       return;
     }
 
@@ -188,7 +227,7 @@ public class ManRefreshListener
           manModule.addFromPath( file, fqnByModule );
           if( !fqnByModule.isEmpty() )
           {
-            notify( manModule, file, fqnByModule, kind );
+            addRequest( manModule, file, fqnByModule, kind, requests );
           }
         }
       }
@@ -206,7 +245,7 @@ public class ManRefreshListener
         fqnByModule.addAll( ((IExtensionClassProducer)tm).getExtendedTypesForFile( file ) );
       }
     }
-    moduleToFqns.forEach( (module, fqns) -> notify( module, file, fqns, kind ) );
+    moduleToFqns.forEach( (module, fqns) -> addRequest( module, file, fqns, kind, requests ) );
   }
 
   private boolean isModuleInfo( IResource res )
@@ -214,11 +253,16 @@ public class ManRefreshListener
     return res instanceof IFile && res.getName().equals( "module-info.java" );
   }
 
-  private void notify( IModule module, IFile file, Set<String> result, RefreshKind kind )
+  private void addRequest( IModule module, IFile file, Set<String> result, RefreshKind kind, Map<IModule, List<RefreshRequest>> requests )
+  {
+    requests.computeIfAbsent( module, m -> new ArrayList<>() )
+      .add( new RefreshRequest( file, result.toArray( new String[0] ), module, kind ) );
+  }
+
+  private void notify( RefreshRequest request )
   {
-    RefreshRequest request = new RefreshRequest( file, result.toArray( new String[0] ), module, kind );
     List<ITypeSystemListener> listeners = getListeners();
-    switch( kind )
+    switch( request.kind )
     {
       case CREATION:
       case MODIFICATION:
@@ -19,29 +19,41 @@
 
 package manifold.ij.extensions;
 
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleUtilCore;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiManager;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.impl.PsiManagerEx;
 import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.psi.search.PsiShortNamesCache;
-import com.intellij.psi.util.ClassUtil;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.Processor;
+import com.intellij.util.indexing.FileBasedIndex;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import manifold.api.host.Dependency;
-import manifold.api.type.ContributorKind;
-import manifold.api.type.ITypeManifold;
 import manifold.ij.core.ManModule;
 import manifold.ij.core.ManProject;
+import manifold.ij.psi.ManExtensionMethodBuilder;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
 /**
+ * Short names of types produced by type manifolds, extension methods, and inferred properties. Type names are looked
+ * up in the project's {@link ManShortNamesIndex}, method and field names in {@link ExtensionMethodNameIndex} and
+ * {@link InferredPropertyNameIndex}.
  */
 public class ManShortNamesCache extends PsiShortNamesCache
 {
@@ -75,42 +87,19 @@ public class ManShortNamesCache extends PsiShortNamesCache
     return psiClasses.toArray( new PsiClass[0] );
   }
 
-  private void findPsiClasses( @NotNull @NonNls String name, @NotNull GlobalSearchScope scope, Set<PsiClass> psiClasses, ManModule module )
+  private void findPsiClasses( @NotNull @NonNls String name, @NotNull GlobalSearchScope scope, Set<PsiClass> psiClasses, ManModule start )
   {
-    findPsiClasses( name, scope, psiClasses, module, module, new HashSet<>() );
-  }
-  private void findPsiClasses( @NotNull @NonNls String name, @NotNull GlobalSearchScope scope, Set<PsiClass> psiClasses,
-                               ManModule start, ManModule module, HashSet<ManModule> visited )
-  {
-    if( visited.contains( module ) )
-    {
-      return;
-    }
-    visited.add( module );
-
-    for( ITypeManifold tm: module.getTypeManifolds() )
+    for( ManModule module: start.getVisibleModules() )
     {
-      for( String fqn: tm.getAllTypeNames() )
+      for( String fqn: module.getProject().getShortNamesIndex().getFqns( module, name ) )
       {
-        String simpleName = ClassUtil.extractClassName( fqn );
-        if( simpleName.equals( name ) )
+        PsiClass psiClass = ManifoldPsiClassCache.getPsiClass( module, fqn );
+        if( psiClass != null )
         {
-          PsiClass psiClass = ManifoldPsiClassCache.getPsiClass( module, fqn );
-          if( psiClass == null )
-          {
-            return;
-          }
           psiClasses.add( psiClass );
         }
       }
     }
-    for( Dependency d: module.getDependencies() )
-    {
-      if( module == start || d.isExported() )
-      {
-        findPsiClasses( name, scope, psiClasses, start, (ManModule)d.getModule(), visited );
-      }
-    }
   }
 
   @NotNull
@@ -136,32 +125,11 @@ public class ManShortNamesCache extends PsiShortNamesCache
     }
   }
 
-  private void findClassFqns( @NotNull HashSet<String> dest, ManModule module )
+  private void findClassFqns( @NotNull HashSet<String> dest, ManModule start )
   {
-    findClassFqns( dest, module, module, new HashSet<>() );
-  }
-  private void findClassFqns( @NotNull HashSet<String> dest, ManModule start, ManModule module, HashSet<ManModule> visited )
-  {
-    if( visited.contains( module ) )
-    {
-      return;
-    }
-    visited.add( module );
-
-    for( ITypeManifold tm: module.getTypeManifolds() )
-    {
-      if( tm.getContributorKind() == ContributorKind.Supplemental )
-      {
-        continue;
-      }
-      dest.addAll( tm.getAllTypeNames().stream().map( ClassUtil::extractClassName ).collect( Collectors.toList() ) );
-    }
-    for( Dependency d : module.getDependencies() )
+    for( ManModule module: start.getVisibleModules() )
     {
-      if( module == start || d.isExported() )
-      {
-        findClassFqns( dest, start, (ManModule)d.getModule(), visited );
-      }
+      dest.addAll( module.getProject().getShortNamesIndex().getShortNames( module ) );
     }
   }
 
@@ -169,47 +137,176 @@ public class ManShortNamesCache extends PsiShortNamesCache
   @Override
   public PsiMethod[] getMethodsByName( @NonNls @NotNull String name, @NotNull GlobalSearchScope scope )
   {
-    return new PsiMethod[0];
+    return getMethodsByNameIfNotMoreThan( name, scope, Integer.MAX_VALUE );
   }
 
   @NotNull
   @Override
   public PsiMethod[] getMethodsByNameIfNotMoreThan( @NonNls @NotNull String name, @NotNull GlobalSearchScope scope, int maxCount )
   {
-    return new PsiMethod[0];
+    List<PsiMethod> methods = new ArrayList<>();
+    processMethodsWithName( name, scope, m -> {
+      methods.add( m );
+      return methods.size() < maxCount;
+    } );
+    return methods.toArray( PsiMethod.EMPTY_ARRAY );
   }
 
   @NotNull
   @Override
   public PsiField[] getFieldsByNameIfNotMoreThan( @NonNls @NotNull String name, @NotNull GlobalSearchScope scope, int maxCount )
   {
-    return new PsiField[0];
+    List<PsiField> fields = new ArrayList<>();
+    processFieldsWithName( name, scope, f -> {
+      fields.add( f );
+      return fields.size() < maxCount;
+    } );
+    return fields.toArray( PsiField.EMPTY_ARRAY );
   }
 
+  /**
+   * Process the extension methods named {@code name} as the augmented methods of the classes they extend. Extension
+   * methods are found via {@link ExtensionMethodNameIndex}.
+   */
   @Override
   public boolean processMethodsWithName( @NotNull String name, @NotNull GlobalSearchScope scope, @NotNull Processor<? super PsiMethod> processor )
   {
+    if( !isIndexAvailable() )
+    {
+      return true;
+    }
+
+    Map<VirtualFile, Set<String>> extendedFqnsByFile = new HashMap<>();
+    FileBasedIndex.getInstance().processValues( ExtensionMethodNameIndex.NAME, name, null,
+      ( file, extendedFqnByExtClass ) -> {
+        extendedFqnsByFile.computeIfAbsent( file, __ -> new HashSet<>() ).addAll( extendedFqnByExtClass.values() );
+        return true;
+      }, scope );
+
+    for( Map.Entry<VirtualFile, Set<String>> entry: extendedFqnsByFile.entrySet() )
+    {
+      PsiFile extFile = _psiManager.findFile( entry.getKey() );
+      if( extFile == null )
+      {
+        continue;
+      }
+      for( String extendedFqn: entry.getValue() )
+      {
+        PsiClass extendedClass = JavaPsiFacade.getInstance( _psiManager.getProject() )
+          .findClass( extendedFqn, getExtendedClassScope( extFile ) );
+        if( extendedClass == null )
+        {
+          continue;
+        }
+        for( PsiMethod m: extendedClass.findMethodsByName( name, false ) )
+        {
+          if( m instanceof ManExtensionMethodBuilder &&
+            ((ManExtensionMethodBuilder)m).getTargetMethod().getContainingFile() == extFile )
+          {
+            if( !processor.process( m ) )
+            {
+              return false;
+            }
+          }
+        }
+      }
+    }
     return true;
   }
 
+  private GlobalSearchScope getExtendedClassScope( PsiFile extFile )
+  {
+    // the extended class is typically in a library
+    Module module = ModuleUtilCore.findModuleForFile( extFile );
+    return module != null
+           ? GlobalSearchScope.moduleWithDependenciesAndLibrariesScope( module )
+           : GlobalSearchScope.allScope( _psiManager.getProject() );
+  }
+
   @NotNull
   @Override
   public String[] getAllMethodNames()
   {
-    return new String[0];
+    if( !isIndexAvailable() )
+    {
+      return ArrayUtil.EMPTY_STRING_ARRAY;
+    }
+    return ArrayUtil.toStringArray(
+      FileBasedIndex.getInstance().getAllKeys( ExtensionMethodNameIndex.NAME, _psiManager.getProject() ) );
   }
 
   @NotNull
   @Override
   public PsiField[] getFieldsByName( @NotNull @NonNls String name, @NotNull GlobalSearchScope scope )
   {
-    return new PsiField[0];
+    return getFieldsByNameIfNotMoreThan( name, scope, Integer.MAX_VALUE );
+  }
+
+  /**
+   * Process the properties named {@code name} inferred from getter/setter methods. Candidate classes are found via
+   * {@link InferredPropertyNameIndex}.
+   */
+  private void processFieldsWithName( @NotNull String name, @NotNull GlobalSearchScope scope, @NotNull Processor<? super PsiField> processor )
+  {
+    if( !isIndexAvailable() ||
+      !ManProject.manProjectFrom( _psiManager.getProject() ).isPropertiesEnabledInAnyModules() )
+    {
+      return;
+    }
+
+    Collection<VirtualFile> files = FileBasedIndex.getInstance().getContainingFiles( InferredPropertyNameIndex.NAME, name, scope );
+    for( VirtualFile file: files )
+    {
+      PsiFile psiFile = _psiManager.findFile( file );
+      if( psiFile instanceof PsiJavaFile )
+      {
+        for( PsiClass psiClass: ((PsiJavaFile)psiFile).getClasses() )
+        {
+          if( !processInferredFields( psiClass, name, processor ) )
+          {
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  private boolean processInferredFields( PsiClass psiClass, String name, Processor<? super PsiField> processor )
+  {
+    PsiField field = psiClass.findFieldByName( name, false );
+    if( field != null && field.getCopyableUserData( PropertyInference.VAR_TAG ) != null )
+    {
+      if( !processor.process( field ) )
+      {
+        return false;
+      }
+    }
+    for( PsiClass innerClass: psiClass.getInnerClasses() )
+    {
+      if( !processInferredFields( innerClass, name, processor ) )
+      {
+        return false;
+      }
+    }
+    return true;
   }
 
   @NotNull
   @Override
   public String[] getAllFieldNames()
   {
-    return new String[0];
+    if( !isIndexAvailable() ||
+      !ManProject.manProjectFrom( _psiManager.getProject() ).isPropertiesEnabledInAnyModules() )
+    {
+      return ArrayUtil.EMPTY_STRING_ARRAY;
+    }
+    return ArrayUtil.toStringArray(
+      FileBasedIndex.getInstance().getAllKeys( InferredPropertyNameIndex.NAME, _psiManager.getProject() ) );
+  }
+
+  private boolean isIndexAvailable()
+  {
+    Project project = _psiManager.getProject();
+    return ManProject.isManifoldInUse( project ) && !DumbService.isDumb( project );
   }
 }
@@ -0,0 +1,182 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.psi.util.ClassUtil;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import manifold.api.host.AbstractTypeSystemListener;
+import manifold.api.host.RefreshKind;
+import manifold.api.host.RefreshRequest;
+import manifold.api.type.ContributorKind;
+import manifold.api.type.ITypeManifold;
+import manifold.ij.core.ManModule;
+import manifold.ij.core.ManProject;
+import manifold.util.concurrent.ConcurrentHashSet;
+import manifold.util.concurrent.ConcurrentWeakHashMap;
+
+/**
+ * Maps simple class names to the fully qualified names of types produced by a module's Primary and Partial type
+ * manifolds. A module's index is built from {@link ITypeManifold#getAllTypeNames()} the first time it is queried and
+ * is then maintained incrementally from {@link RefreshRequest}s, so {@link ManShortNamesCache} does not rescan all the
+ * type names of all modules per query.
+ * <p/>
+ * The index covers a module's own type manifolds, callers walk module dependencies as needed.
+ */
+public class ManShortNamesIndex extends AbstractTypeSystemListener
+{
+  private final ManProject _project;
+  private final Map<ManModule, ModuleIndex> _indexPerModule;
+  private volatile boolean _listening;
+
+  public ManShortNamesIndex( ManProject project )
+  {
+    _project = project;
+    _indexPerModule = new ConcurrentWeakHashMap<>();
+  }
+
+  /**
+   * @return The fqns of types in {@code module} having simple name {@code name}
+   */
+  public Set<String> getFqns( ManModule module, String name )
+  {
+    Set<String> fqns = getIndex( module )._byShortName.get( name );
+    return fqns == null ? Collections.emptySet() : fqns;
+  }
+
+  /**
+   * @return The simple names of all types in {@code module}
+   */
+  public Set<String> getShortNames( ManModule module )
+  {
+    return getIndex( module )._byShortName.keySet();
+  }
+
+  private ModuleIndex getIndex( ManModule module )
+  {
+    listenToChanges();
+    return _indexPerModule.computeIfAbsent( module, ModuleIndex::new );
+  }
+
+  private void listenToChanges()
+  {
+    if( !_listening )
+    {
+      _listening = true;
+      _project.getFileModificationManager().getManRefresher().addTypeSystemListenerAsWeakRef( this );
+    }
+  }
+
+  @Override
+  public void refreshedTypes( RefreshRequest request )
+  {
+    if( !(request.module instanceof ManModule) )
+    {
+      return;
+    }
+
+    ModuleIndex index = _indexPerModule.get( (ManModule)request.module );
+    if( index != null )
+    {
+      // only update modules already indexed, others are built on demand
+      index.update( request );
+    }
+  }
+
+  @Override
+  public void refreshed()
+  {
+    _indexPerModule.clear();
+  }
+
+  private static class ModuleIndex
+  {
+    private final ManModule _module;
+    private final Map<String, Set<String>> _byShortName;
+
+    private ModuleIndex( ManModule module )
+    {
+      _module = module;
+      _byShortName = new ConcurrentHashMap<>();
+      for( ITypeManifold tm: module.getTypeManifolds() )
+      {
+        if( isIndexed( tm ) )
+        {
+          for( String fqn: tm.getAllTypeNames() )
+          {
+            add( fqn );
+          }
+        }
+      }
+    }
+
+    private synchronized void update( RefreshRequest request )
+    {
+      for( String fqn: request.types )
+      {
+        if( request.kind == RefreshKind.DELETION )
+        {
+          // type manifolds are updated after this listener on deletion, see ManRefreshListener#notify()
+          remove( fqn );
+        }
+        else if( isType( fqn ) )
+        {
+          add( fqn );
+        }
+        else
+        {
+          remove( fqn );
+        }
+      }
+    }
+
+    private boolean isType( String fqn )
+    {
+      for( ITypeManifold tm: _module.getTypeManifolds() )
+      {
+        if( isIndexed( tm ) && tm.isType( fqn ) )
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static boolean isIndexed( ITypeManifold tm )
+    {
+      return tm.getContributorKind() != ContributorKind.Supplemental;
+    }
+
+    private void add( String fqn )
+    {
+      _byShortName.computeIfAbsent( ClassUtil.extractClassName( fqn ), k -> new ConcurrentHashSet<>() ).add( fqn );
+    }
+
+    private void remove( String fqn )
+    {
+      _byShortName.computeIfPresent( ClassUtil.extractClassName( fqn ), ( k, fqns ) -> {
+        fqns.remove( fqn );
+        return fqns.isEmpty() ? null : fqns;
+      } );
+    }
+  }
+}
@@ -28,6 +28,7 @@ import com.intellij.lang.Language;
 import com.intellij.lang.java.JavaLanguage;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.util.text.Strings;
@@ -41,6 +42,9 @@ import com.intellij.psi.search.GlobalSearchScope;
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaFileObject;
 
@@ -75,13 +79,26 @@ import static manifold.api.type.ContributorKind.*;
  */
 public class ManifoldPsiClassCache extends AbstractTypeSystemListener
 {
-  //private static final Logger LOGGER = LoggerFactory.getLogger( ManifoldPsiClassCache.class );
+  private static final Logger LOGGER = LoggerFactory.getLogger( ManifoldPsiClassCache.class );
+
+  /**
+   * How long a thread already in the middle of generating another type waits for a type some other thread is
+   * generating. A cross-thread cycle (A generates X which needs Y, B generates Y which needs X) would otherwise
+   * deadlock, instead the waiting thread gives up exclusivity and generates the type itself.
+   */
+  private static final long NESTED_RESOLUTION_WAIT_MS = 500;
+  private static final long RESOLUTION_POLL_MS = 50;
 
   private final ManProject _project;
   private final Set<Project> _addedListeners;
   private final ThreadLocal<Set<String>> _shortCircuit;
-  private ConcurrentHashMap<String, PsiClass> _filePathToPsi;
+  private volatile ConcurrentHashMap<String, PsiClass> _filePathToPsi;
   private final Map<ManModule, FqnCache<ManifoldPsiClass>> _fqnPsiCachePerModule;
+  private final ConcurrentHashMap<String, ResolutionLock> _resolutionLocks;
+  private final Map<ITypeManifold, ReentrantLock> _contributionLocks;
+  private final Map<ManModule, AtomicLong> _refreshEpochs;
+  private final AtomicLong _refreshAllEpoch;
+  private final GeneratedSourceCache _sourceCache;
 
   public ManifoldPsiClassCache( ManProject project )
   {
@@ -90,6 +107,11 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     _shortCircuit = ThreadLocal.withInitial( () -> new ConcurrentHashSet<>() );
     _filePathToPsi = new ConcurrentHashMap<>();
     _fqnPsiCachePerModule = new ConcurrentWeakHashMap<>();
+    _resolutionLocks = new ConcurrentHashMap<>();
+    _contributionLocks = new ConcurrentWeakHashMap<>();
+    _refreshEpochs = new ConcurrentWeakHashMap<>();
+    _refreshAllEpoch = new AtomicLong();
+    _sourceCache = new GeneratedSourceCache( project );
   }
 
   public ManProject getProject()
@@ -97,6 +119,14 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     return _project;
   }
 
+  /**
+   * Fingerprint the modules for the persisted sources ahead of resolving types, see {@link GeneratedSourceCache}.
+   */
+  public void projectOpened()
+  {
+    _sourceCache.computeFingerprints();
+  }
+
   public static PsiClass getPsiClass( ManModule module, String fqn )
   {
     return module.getProject().getPsiClassCache()._getPsiClass( module, fqn );
@@ -104,8 +134,11 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
   /**
    * This method is for internal use, call {@link com.intellij.psi.JavaPsiFacade#findClass(String, GlobalSearchScope)}
    * instead, which will delegate to this method if appropriate.
+   * <p/>
+   * Independent types resolve in parallel, only threads resolving the same top-level type wait on one another, see
+   * {@link #lockResolution(String)}.
    */
-  synchronized PsiClass _getPsiClass( ManModule module, String fqn )
+  PsiClass _getPsiClass( ManModule module, String fqn )
   {
     if( isShortCircuit( fqn ) )
     {
@@ -168,29 +201,62 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
       listenToChanges( module.getProject() );
 
       // Find cached type...
-      ManifoldPsiClass cached = getCached( module, module, fqn );
+      ManifoldPsiClass cached = getCached( module, fqn );
       if( cached != null )
       {
         return cached;
       }
 
-      // Create new module-specific type...
-      FqnCacheNode<ManifoldPsiClass> node;
+      // A refresh from here on invalidates whatever is generated from the resources as they are now
+      long epoch = getRefreshEpoch( module );
+      Set<ITypeManifold> tms;
+      String topLevelFqn;
       try
       {
-        node = createPrimaryType( module, fqn );
+        tms = findPrimaryTypeManifolds( module, fqn );
+        // lock the top-level type, it is generated and cached as a whole whichever of its classes is requested
+        topLevelFqn = tms.isEmpty() ? fqn : findTopLevelFqn( tms.iterator().next(), fqn );
       }
       catch( IllegalTypeNameException itne )
       {
         // Handle the case where IntelliJ tries to resolve something untype-like
-        node = null;
+        return null;
       }
       catch( Exception e )
       {
-        //LOGGER.error( "Exception creating manifold Psi class '" + fqn + "'", e );
         return PsiErrorClassUtil.create( module.getIjProject(), e );
       }
-      return node == null ? null : node.getUserData();
+
+      ResolutionLock lock = lockResolution( topLevelFqn );
+      try
+      {
+        // Another thread may have created the type while this one was waiting...
+        cached = getCached( module, fqn );
+        if( cached != null )
+        {
+          return cached;
+        }
+
+        // Create new module-specific type...
+        try
+        {
+          return createPrimaryType( module, fqn, topLevelFqn, tms, epoch );
+        }
+        catch( IllegalTypeNameException itne )
+        {
+          // Handle the case where IntelliJ tries to resolve something untype-like
+          return null;
+        }
+        catch( Exception e )
+        {
+          //LOGGER.error( "Exception creating manifold Psi class '" + fqn + "'", e );
+          return PsiErrorClassUtil.create( module.getIjProject(), e );
+        }
+      }
+      finally
+      {
+        unlockResolution( topLevelFqn, lock );
+      }
     }
     finally
     {
@@ -198,36 +264,120 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     }
   }
 
-  private ManifoldPsiClass getCached( ManModule module, ManModule start, String fqn )
+  /**
+   * Sums the refresh epochs of the modules {@code module} sees. Each refresh bumps the epoch of the refreshed module
+   * before it invalidates anything, so a type generated or a miss found while the sum was different must not be
+   * cached, it may already be stale.
+   */
+  private long getRefreshEpoch( ManModule module )
   {
-    FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.get( module );
-    FqnCacheNode<ManifoldPsiClass> node = fqnPsiCache == null ? null : fqnPsiCache.getNode( fqn );
-    if( node != null )
+    long epoch = _refreshAllEpoch.get();
+    for( ManModule visible: module.getVisibleModules() )
     {
-      ManifoldPsiClass psiFacadeClass = node.getUserData();
-      if( psiFacadeClass != null && psiFacadeClass.isValid() )
+      AtomicLong moduleEpoch = _refreshEpochs.get( visible );
+      if( moduleEpoch != null )
       {
-        Module targetModule = psiFacadeClass.getModule();
-        GlobalSearchScope scope = GlobalSearchScope.moduleWithDependenciesScope( module.getIjModule() );
-        if( scope.isSearchInModuleContent( targetModule ) )
+        epoch += moduleEpoch.get();
+      }
+    }
+    return epoch;
+  }
+
+  /**
+   * Acquire the lock dedicated to generating the top-level type {@code fqn}. Locks are created on demand and discarded when no thread
+   * references them, so the map only holds types currently being resolved.
+   * <p/>
+   * A thread that is not generating any other type waits until the lock is free. A thread that is already generating
+   * another type (the type being resolved here is a dependency of it) waits at most {@link #NESTED_RESOLUTION_WAIT_MS}
+   * and then proceeds without the lock, trading a redundant generation for freedom from cross-thread deadlock.
+   *
+   * @return The lock held by the calling thread, or null if the thread proceeds without it
+   */
+  private ResolutionLock lockResolution( String fqn )
+  {
+    ResolutionLock lock = _resolutionLocks.compute( fqn, ( key, l ) -> {
+      if( l == null )
+      {
+        l = new ResolutionLock();
+      }
+      l._refs++;
+      return l;
+    } );
+
+    boolean nested = _shortCircuit.get().size() > 1;
+    long waited = 0;
+    try
+    {
+      while( !lock.tryLock( RESOLUTION_POLL_MS, TimeUnit.MILLISECONDS ) )
+      {
+        ProgressManager.checkCanceled();
+        waited += RESOLUTION_POLL_MS;
+        if( nested && waited >= NESTED_RESOLUTION_WAIT_MS )
         {
-          return psiFacadeClass;
+          LOGGER.warn( "Timed out waiting for another thread to resolve '" + fqn + "', resolving it redundantly" );
+          releaseResolutionRef( fqn );
+          return null;
         }
       }
     }
+    catch( InterruptedException e )
+    {
+      releaseResolutionRef( fqn );
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    catch( RuntimeException e )
+    {
+      // ProcessCanceledException
+      releaseResolutionRef( fqn );
+      throw e;
+    }
+    return lock;
+  }
 
-    for( Dependency d: module.getDependencies() )
+  private void unlockResolution( String fqn, ResolutionLock lock )
+  {
+    if( lock != null )
     {
-      if( module == start || d.isExported() )
+      lock.unlock();
+      releaseResolutionRef( fqn );
+    }
+  }
+
+  private void releaseResolutionRef( String fqn )
+  {
+    _resolutionLocks.computeIfPresent( fqn, ( key, l ) -> --l._refs == 0 ? null : l );
+  }
+
+  /**
+   * Reference-counted so it can be removed from {@link #_resolutionLocks} only when no thread holds or awaits it.
+   * {@code _refs} is only accessed inside {@code ConcurrentHashMap#compute}, which is atomic per key.
+   */
+  private static class ResolutionLock extends ReentrantLock
+  {
+    private int _refs;
+  }
+
+  private ManifoldPsiClass getCached( ManModule start, String fqn )
+  {
+    for( ManModule module: start.getVisibleModules() )
+    {
+      FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.get( module );
+      FqnCacheNode<ManifoldPsiClass> node = fqnPsiCache == null ? null : getNode( fqnPsiCache, fqn );
+      if( node != null )
       {
-        ManifoldPsiClass cached = getCached( (ManModule) d.getModule(), start, fqn );
-        if( cached != null )
+        ManifoldPsiClass psiFacadeClass = node.getUserData();
+        if( psiFacadeClass != null && psiFacadeClass.isValid() )
         {
-          return cached;
+          Module targetModule = psiFacadeClass.getModule();
+          GlobalSearchScope scope = GlobalSearchScope.moduleWithDependenciesScope( module.getIjModule() );
+          if( scope.isSearchInModuleContent( targetModule ) )
+          {
+            return psiFacadeClass;
+          }
         }
       }
     }
-
     return null;
   }
 
@@ -287,10 +437,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     return _shortCircuit.get().contains( fqn );
   }
 
-  /**
-   * Create a type corresponding with a Primary or Partial type manifold, as opposed to a Supplemental one.
-   */
-  private FqnCacheNode<ManifoldPsiClass> createPrimaryType( ManModule module, String fqn )
+  private Set<ITypeManifold> findPrimaryTypeManifolds( ManModule module, String fqn )
   {
     Set<ITypeManifold> tms = module.findTypeManifoldsFor( fqn, tm -> tm.getContributorKind() == Primary ||
                                                                      tm.getContributorKind() == Partial );
@@ -305,44 +452,126 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
         //LOGGER.info( "Found '" + fqn + "' after shakeBake()" );
       }
     }
+    return tms;
+  }
 
+  /**
+   * Create a type corresponding with a Primary or Partial type manifold, as opposed to a Supplemental one.
+   * <p/>
+   * The type, or the miss, is cached only if no refresh happened since {@code epoch} was read, otherwise it is
+   * returned uncached.
+   */
+  private ManifoldPsiClass createPrimaryType( ManModule module, String fqn, String topLevelFqn, Set<ITypeManifold> tms, long epoch )
+  {
     ITypeManifold found = null;
     if( !tms.isEmpty() )
     {
-      String result = "";
       DiagnosticCollector<JavaFileObject> issues = new DiagnosticCollector<>();
-      String topLevelFqn = null;
+
+      // MUST start with top-level class, otherwise the classes enclosing an inner class will have null userData
+      // cached with their names, preventing the them from ever loading.  So when we cache a class name we always get
+      // its outermost enclosing class and cache that and the entire nest of classes it contains, top-down.  See the
+      // cacheAll() call following this for loop.
+
+      // Reuse the source generated in a previous session if the resources it derives from are unchanged
+      String cachedResult = _sourceCache.find( module, topLevelFqn, tms );
+      String result = "";
       boolean isTestContent = false;
       for( ITypeManifold tm : tms )
       {
-        // MUST start with top-level class, otherwise the classes enclosing an inner class will have null userData
-        // cached with their names, preventing the them from ever loading.  So when we cache a class name we always get
-        // its outermost enclosing class and cache that and the entire nest of classes it contains, top-down.  See the
-        // cacheAll() call following this for loop.
-        topLevelFqn = topLevelFqn == null ? findTopLevelFqn( tm, fqn ) : topLevelFqn;
-
         if( found != null && (found.getContributorKind() == Primary || tm.getContributorKind() == Primary) )
         {
           throw new ConflictingTypeManifoldsException( fqn, found, tm );
         }
         found = tm;
-        result = tm.contribute( null, topLevelFqn, false, result, issues );
+        if( cachedResult == null )
+        {
+          result = contribute( tm, topLevelFqn, result, issues );
+        }
 
         isTestContent = isTestContent( module, topLevelFqn, isTestContent, tm );
       }
+      if( cachedResult != null )
+      {
+        result = cachedResult;
+      }
+      else if( issues.getDiagnostics().isEmpty() )
+      {
+        _sourceCache.store( module, topLevelFqn, tms, result );
+      }
 
       ManModule actualModule = (ManModule)found.getModule();
       PsiClass delegate = createPsiClass( actualModule, topLevelFqn, isTestContent, result );
-      cacheAll( delegate, actualModule, found, issues );
+      List<ManifoldPsiClass> classes = new ArrayList<>();
+      makeAll( delegate, actualModule, found, issues, classes );
+      cacheAll( module, actualModule, classes, epoch );
+      return classes.stream().filter( c -> fqn.equals( c.getQualifiedName() ) ).findFirst().orElse( null );
     }
 
+    // cache the miss
     FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.computeIfAbsent( module, key -> new FqnCache<>() );
-    if( found == null )
+    synchronized( fqnPsiCache )
     {
-      // cache the miss
-      fqnPsiCache.add( fqn );
+      if( getRefreshEpoch( module ) == epoch )
+      {
+        fqnPsiCache.add( fqn );
+      }
+    }
+    return null;
+  }
+
+  /**
+   * FqnCache is not thread-safe, reads synchronize on the cache as structural changes do
+   */
+  private static FqnCacheNode<ManifoldPsiClass> getNode( FqnCache<ManifoldPsiClass> fqnPsiCache, String fqn )
+  {
+    synchronized( fqnPsiCache )
+    {
+      return fqnPsiCache.getNode( fqn );
+    }
+  }
+
+  /**
+   * Types resolve concurrently, but type manifolds are not written for concurrent contributions. Contributions are
+   * serialized per type manifold, so cold types of one type manifold generate one at a time.
+   * <p/>
+   * A thread already generating another type may hold the lock of another type manifold, which the thread holding
+   * this lock may be waiting for. Such a thread waits at most {@link #NESTED_RESOLUTION_WAIT_MS} and then fails the
+   * nested resolution. The failure is not cached, the type resolves again on the next request.
+   */
+  private String contribute( ITypeManifold tm, String topLevelFqn, String result, DiagnosticCollector<JavaFileObject> issues )
+  {
+    ReentrantLock lock = _contributionLocks.computeIfAbsent( tm, key -> new ReentrantLock() );
+    boolean nested = _shortCircuit.get().size() > 1;
+    try
+    {
+      long waited = 0;
+      while( !lock.tryLock( RESOLUTION_POLL_MS, TimeUnit.MILLISECONDS ) )
+      {
+        ProgressManager.checkCanceled();
+        waited += RESOLUTION_POLL_MS;
+        if( nested && waited >= NESTED_RESOLUTION_WAIT_MS )
+        {
+          throw new IllegalStateException( "Timed out waiting for " + tm.getClass().getSimpleName() +
+            " to contribute '" + topLevelFqn + "'" );
+        }
+      }
+    }
+    catch( InterruptedException e )
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( "Interrupted waiting for " + tm.getClass().getSimpleName() +
+        " to contribute '" + topLevelFqn + "'", e );
+    }
+
+    try
+    {
+      return tm.contribute( null, topLevelFqn, false, result, issues );
+    }
+    finally
+    {
+      lock.unlock();
     }
-    return fqnPsiCache.getNode( fqn );
   }
 
   private static boolean isTestContent( ManModule module, String topLevelFqn, boolean isTestContent, ITypeManifold tm )
@@ -370,23 +599,43 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     return findTopLevelFqn( tm, fqn );
   }
 
-  private void cacheAll( PsiClass delegate, ManModule actualModule, ITypeManifold tm, DiagnosticCollector<JavaFileObject> issues )
+  private void makeAll( PsiClass delegate, ManModule actualModule, ITypeManifold tm,
+                        DiagnosticCollector<JavaFileObject> issues, List<ManifoldPsiClass> classes )
   {
     String fqn = delegate.getQualifiedName();
     List<IFile> files = tm.findFilesForType( fqn );
-    ManifoldPsiClass psiFacadeClass = new ManifoldPsiClass( delegate, actualModule, files, fqn, issues );
+    classes.add( new ManifoldPsiClass( delegate, actualModule, files, fqn, issues ) );
+    for( PsiClass inner: delegate.getInnerClasses() )
+    {
+      makeAll( inner, actualModule, tm, issues, classes );
+    }
+  }
+
+  /**
+   * Cache the classes of a type unless a refresh happened since {@code epoch} was read. The check and the additions
+   * are atomic with respect to the invalidation, which removes types from the same cache after bumping the epoch.
+   */
+  private void cacheAll( ManModule module, ManModule actualModule, List<ManifoldPsiClass> classes, long epoch )
+  {
     FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.computeIfAbsent( actualModule, key -> new FqnCache<>() );
-    fqnPsiCache.add( fqn, psiFacadeClass );
-    if( psiFacadeClass.getContainingClass() == null ) // associate only top-level class with file
+    // types resolve concurrently, serialize structural changes to the module's cache
+    synchronized( fqnPsiCache )
     {
-      for( IFile file : files )
+      if( getRefreshEpoch( module ) != epoch )
       {
-        _filePathToPsi.put( file.getPath().getPathString(), psiFacadeClass );
+        return;
+      }
+      for( ManifoldPsiClass psiFacadeClass: classes )
+      {
+        fqnPsiCache.add( psiFacadeClass.getQualifiedName(), psiFacadeClass );
+        if( psiFacadeClass.getContainingClass() == null ) // associate only top-level class with file
+        {
+          for( IFile file : psiFacadeClass.getFiles() )
+          {
+            _filePathToPsi.put( file.getPath().getPathString(), psiFacadeClass );
+          }
+        }
       }
-    }
-    for( PsiClass inner: delegate.getInnerClasses() )
-    {
-      cacheAll( inner, actualModule, tm, issues );
     }
   }
 
@@ -468,7 +717,7 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
   }
 
   @Override
-  public synchronized void refreshedTypes( RefreshRequest request )
+  public void refreshedTypes( RefreshRequest request )
   {
     if( !(request.module instanceof ManModule) )
     {
@@ -476,11 +725,17 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     }
 
     ManModule module = (ManModule)request.module;
+    // bump before invalidating, types generated from the old resources are then not cached, see cacheAll()
+    _refreshEpochs.computeIfAbsent( module, key -> new AtomicLong() ).incrementAndGet();
+    _sourceCache.invalidate( module, request.file );
     FqnCache<ManifoldPsiClass> fqnPsiCache = _fqnPsiCachePerModule.computeIfAbsent( module, key -> new FqnCache<>() );
-    for( String type : request.types )
+    synchronized( fqnPsiCache )
     {
-      //removeDependentTypes( type, map, module );
-      fqnPsiCache.remove( type );
+      for( String type : request.types )
+      {
+        //removeDependentTypes( type, map, module );
+        fqnPsiCache.remove( type );
+      }
     }
     if( request.file != null )
     {
@@ -504,9 +759,12 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
     FqnCache<ManifoldPsiClass> fqnPsiCache =
       _fqnPsiCachePerModule.computeIfAbsent( module, key -> new FqnCache<>() );
 
-    if( fqnPsiCache.remove( removedFacade.getQualifiedName() ) )
+    synchronized( fqnPsiCache )
     {
-      return true;
+      if( fqnPsiCache.remove( removedFacade.getQualifiedName() ) )
+      {
+        return true;
+      }
     }
 
     for( Dependency d: module.getDependencies() )
@@ -526,11 +784,13 @@ public class ManifoldPsiClassCache extends AbstractTypeSystemListener
   @Override
   public void refreshed()
   {
+    _refreshAllEpoch.incrementAndGet();
     _filePathToPsi = new ConcurrentHashMap<>();
     _fqnPsiCachePerModule.clear();
+    _sourceCache.reset();
 
-    // reparse all files that have at least one embedded fragment, otherwise types will re-resolve normally
-    FragmentCache.instance().reparseAll( getProject().getNativeProject() );
+    // renew all embedded fragments, otherwise types will re-resolve normally
+    FragmentCache.instance().renewAll( getProject().getNativeProject() );
   }
 
   private class PsiTreeChangeHandler extends PsiTreeChangeAdapter
@@ -0,0 +1,228 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.extensions;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.util.indexing.*;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Indexes the preprocessor symbols Java files reference in {@code #if} and {@code #elif} conditions, so a change to a
+ * symbol's value reparses only the files depending on it, see {@link manifold.ij.util.ReparseUtil}.
+ * <p/>
+ * The index is purely lexical and a superset, any identifier in a condition is a key, whether or not the directive is
+ * in a comment or in an inactive region.
+ */
+public class PreprocessorSymbolIndex extends ScalarIndexExtension<String>
+{
+  public static final ID<String, Void> NAME = ID.create( "manifold.PreprocessorSymbolIndex" );
+
+  private static final String IF = "#if";
+  private static final String ELIF = "#elif";
+
+  @Override
+  public @NotNull ID<String, Void> getName()
+  {
+    return NAME;
+  }
+
+  @Override
+  public @NotNull DataIndexer<String, Void, FileContent> getIndexer()
+  {
+    return PreprocessorSymbolIndex::index;
+  }
+
+  @Override
+  public @NotNull KeyDescriptor<String> getKeyDescriptor()
+  {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public int getVersion()
+  {
+    return 1;
+  }
+
+  @Override
+  public FileBasedIndex.@NotNull InputFilter getInputFilter()
+  {
+    return new DefaultFileTypeSpecificInputFilter( JavaFileType.INSTANCE );
+  }
+
+  @Override
+  public boolean dependsOnFileContent()
+  {
+    return true;
+  }
+
+  /**
+   * @return The Java files under {@code dir} referencing any of {@code symbols} in a condition, or null in dumb mode
+   */
+  public static @Nullable Set<VirtualFile> findReferencingFiles( @NotNull Project project, @NotNull VirtualFile dir,
+                                                                 @NotNull Collection<String> symbols )
+  {
+    if( DumbService.isDumb( project ) )
+    {
+      return null;
+    }
+
+    GlobalSearchScope scope = GlobalSearchScope.projectScope( project );
+    Set<VirtualFile> files = new HashSet<>();
+    for( String symbol: symbols )
+    {
+      for( VirtualFile file: FileBasedIndex.getInstance().getContainingFiles( NAME, symbol, scope ) )
+      {
+        if( VfsUtilCore.isAncestor( dir, file, false ) )
+        {
+          files.add( file );
+        }
+      }
+    }
+    return files;
+  }
+
+  private static Map<String, Void> index( FileContent content )
+  {
+    CharSequence text = content.getContentAsText();
+    if( !StringUtil.contains( text, IF ) )
+    {
+      // #elif does not stand alone
+      return Collections.emptyMap();
+    }
+
+    Map<String, Void> map = new HashMap<>();
+    visitConditionSymbols( text, 0, symbol -> {
+      map.put( symbol, null );
+      return true;
+    } );
+    return map;
+  }
+
+  /**
+   * Visits the symbols referenced in {@code #if} and {@code #elif} conditions on the lines of {@code text} beginning at
+   * or after {@code start}.
+   *
+   * @param visitor Returns false to stop visiting
+   * @return False if {@code visitor} stopped visiting
+   */
+  public static boolean visitConditionSymbols( CharSequence text, int start, Predicate<String> visitor )
+  {
+    int length = text.length();
+    int lineStart = start;
+    while( lineStart < length )
+    {
+      int lineEnd = StringUtil.indexOf( text, '\n', lineStart );
+      if( lineEnd < 0 )
+      {
+        lineEnd = length;
+      }
+      int directiveStart = skipWhitespace( text, lineStart, lineEnd );
+      if( StringUtil.startsWith( text, directiveStart, IF ) )
+      {
+        if( !visitCondition( text, directiveStart + IF.length(), lineEnd, visitor ) )
+        {
+          return false;
+        }
+      }
+      else if( StringUtil.startsWith( text, directiveStart, ELIF ) )
+      {
+        if( !visitCondition( text, directiveStart + ELIF.length(), lineEnd, visitor ) )
+        {
+          return false;
+        }
+      }
+      lineStart = lineEnd + 1;
+    }
+    return true;
+  }
+
+  private static boolean visitCondition( CharSequence text, int start, int end, Predicate<String> visitor )
+  {
+    if( start < end && Character.isJavaIdentifierPart( text.charAt( start ) ) )
+    {
+      // not a directive e.g., #ifdef
+      return true;
+    }
+
+    int i = start;
+    while( i < end )
+    {
+      char c = text.charAt( i );
+      if( c == '"' )
+      {
+        // skip string literal
+        i++;
+        while( i < end && text.charAt( i ) != '"' )
+        {
+          i += text.charAt( i ) == '\\' ? 2 : 1;
+        }
+        i++;
+      }
+      else if( c == '/' && i + 1 < end && text.charAt( i + 1 ) == '/' )
+      {
+        // line comment
+        return true;
+      }
+      else if( Character.isJavaIdentifierStart( c ) )
+      {
+        int symbolStart = i;
+        while( i < end && (Character.isJavaIdentifierPart( text.charAt( i ) ) || text.charAt( i ) == '.') )
+        {
+          i++;
+        }
+        if( !visitor.test( text.subSequence( symbolStart, i ).toString() ) )
+        {
+          return false;
+        }
+      }
+      else
+      {
+        i++;
+      }
+    }
+    return true;
+  }
+
+  private static int skipWhitespace( CharSequence text, int start, int end )
+  {
+    while( start < end && Character.isWhitespace( text.charAt( start ) ) )
+    {
+      start++;
+    }
+    return start;
+  }
+}
@@ -52,6 +52,8 @@ class PropertyInference
   static final Key<SmartPsiElementPointer<PsiMethod>> SETTER_TAG = Key.create( "SETTER_TAG" );
 
   private final LinkedHashMap<String, PsiMember> _augFeatures;
+  private List<LibraryPropertyCache.Inferred> _inferred;
+  private boolean _comparedDifferentTypes;
 
   static void inferPropertyFields( PsiExtensibleClass psiClass, LinkedHashMap<String, PsiMember> augFeatures )
   {
@@ -66,9 +68,32 @@ class PropertyInference
 
   private void inferPropertyFields( PsiExtensibleClass psiClass )
   {
+    // library classes are immutable, reuse the accessor pairing from a previous session, see LibraryPropertyCache.
+    // Look it up before computing augments, an entry is only valid while the class has no extension methods. Locating
+    // rules out source classes cheaply, check for extensions only after
+    LibraryPropertyCache.Location location = LibraryPropertyCache.instance().locate( psiClass );
+    if( location != null && ManAugmentProvider.isExtended( psiClass ) )
+    {
+      location = null;
+    }
+    if( location != null )
+    {
+      List<LibraryPropertyCache.Inferred> inferred = LibraryPropertyCache.instance().find( location );
+      if( inferred != null && replay( psiClass, inferred ) )
+      {
+        return;
+      }
+      _inferred = new ArrayList<>();
+    }
+
     Map<String, Set<PropAttrs>> fromGetter = new HashMap<>();
     Map<String, Set<PropAttrs>> fromSetter = new HashMap<>();
-    for( PsiMethod psiMethod : getMethodsForClass( psiClass ) )
+    List<PsiMethod> methods = new ArrayList<>( psiClass.getOwnMethods() );
+    if( location == null )
+    {
+      methods.addAll( getExtensionMethods( psiClass ) );
+    }
+    for( PsiMethod psiMethod : methods )
     {
       gatherCandidates( psiMethod, fromGetter, fromSetter );
     }
@@ -76,25 +101,91 @@ class PropertyInference
     handleVars( fromGetter, fromSetter );
     handleVals( fromGetter, fromSetter );
     handleWos( fromGetter, fromSetter );
+
+    if( location != null && !_comparedDifferentTypes && !_inferred.isEmpty() )
+    {
+      // a class without properties is cheap to infer, not worth a file
+      LibraryPropertyCache.instance().store( location, _inferred );
+    }
   }
 
-  @NotNull
-  private static List<PsiMethod> getMethodsForClass( PsiExtensibleClass psiClass )
+  /**
+   * Apply properties inferred for {@code psiClass} in a previous session.
+   *
+   * @return False if an accessor no longer resolves, nothing is applied in that case
+   */
+  private boolean replay( PsiExtensibleClass psiClass, List<LibraryPropertyCache.Inferred> inferred )
   {
-    List<PsiMethod> methods = new ArrayList<>( psiClass.getOwnMethods() );
+    if( inferred.isEmpty() )
+    {
+      return true;
+    }
+
+    Map<String, PsiMethod> bySignature = new HashMap<>();
+    for( PsiMethod m : psiClass.getOwnMethods() )
+    {
+      bySignature.put( LibraryPropertyCache.signature( m ), m );
+    }
+
+    List<PropAttrs[]> accessors = new ArrayList<>( inferred.size() );
+    for( LibraryPropertyCache.Inferred entry : inferred )
+    {
+      PropAttrs getAttr = null;
+      PropAttrs setAttr = null;
+      if( entry._getter != null )
+      {
+        PsiMethod getter = bySignature.get( entry._getter );
+        getAttr = getter == null ? null : derivePropertyNameFromGetter( getter );
+        if( getAttr == null )
+        {
+          return false;
+        }
+      }
+      if( entry._setter != null )
+      {
+        PsiMethod setter = bySignature.get( entry._setter );
+        setAttr = setter == null ? null : derivePropertyNameFromSetter( setter );
+        if( setAttr == null )
+        {
+          return false;
+        }
+      }
+      accessors.add( new PropAttrs[]{getAttr, setAttr} );
+    }
+
+    for( int i = 0; i < accessors.size(); i++ )
+    {
+      PropAttrs getAttr = accessors.get( i )[0];
+      PropAttrs setAttr = accessors.get( i )[1];
+      Class<? extends Annotation> varClass = inferred.get( i )._varClass;
+      if( varClass == var.class )
+      {
+        makeVar( getAttr, setAttr );
+      }
+      else if( varClass == val.class )
+      {
+        makeVal( getAttr );
+      }
+      else
+      {
+        makeWo( setAttr );
+      }
+    }
+    return true;
+  }
 
-    // add extension methods, we need any potential getter/setter extension methods
+  @NotNull
+  private static List<PsiMethod> getExtensionMethods( PsiExtensibleClass psiClass )
+  {
+    // we need any potential getter/setter extension methods
     for( @NotNull PsiAugmentProvider p: PsiAugmentProvider.EP_NAME.getPoint().getExtensionList() )
     {
       if( p instanceof ManAugmentProvider )
       {
-        List<PsiMethod> extMethods = ((ManAugmentProvider)p).getAugments( psiClass, PsiMethod.class, null );
-        methods.addAll( extMethods );
-        break;
+        return ((ManAugmentProvider)p).getAugments( psiClass, PsiMethod.class, null );
       }
     }
-
-    return methods;
+    return Collections.emptyList();
   }
 
   private void gatherCandidates( PsiMethod m, Map<String, Set<PropAttrs>> fromGetter, Map<String, Set<PropAttrs>> fromSetter )
@@ -164,7 +255,7 @@ class PropertyInference
           {
             PropAttrs setAttr = setterIter.next();
             PsiType setType = setAttr._type;
-            if( setType.isAssignableFrom( getType ) &&
+            if( isAssignable( setType, getType ) &&
               getAttr._m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) == setAttr._m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) )
             {
               makeVar( getAttr, setAttr );
@@ -191,7 +282,7 @@ class PropertyInference
               {
                 PropAttrs setAttr = setterIter.next();
                 PsiType setType = setAttr._type;
-                if( getType.isAssignableFrom( setType ) &&
+                if( isAssignable( getType, setType ) &&
                   getAttr._m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) == setAttr._m.getModifierList().hasModifierProperty( PsiModifier.STATIC ) )
                 {
                   makeVar( getAttr, setAttr );
@@ -207,6 +298,17 @@ class PropertyInference
     }
   }
 
+  private boolean isAssignable( PsiType to, PsiType from )
+  {
+    if( to.equals( from ) )
+    {
+      return true;
+    }
+    // the outcome may depend on classes outside the library, see LibraryPropertyCache
+    _comparedDifferentTypes = true;
+    return to.isAssignableFrom( from );
+  }
+
   private boolean isIsProperty( String name )
   {
     return name.length() > 2 && name.startsWith( "is" ) && Character.isUpperCase( name.charAt( 2 ) );
@@ -248,6 +350,7 @@ class PropertyInference
 
   private void makeVar( PropAttrs getAttr, PropAttrs setAttr )
   {
+    record( var.class, getAttr, setAttr );
     String fieldName = getAttr._name;
     PsiClass psiClass = getAttr._m.getContainingClass();
     if( !(psiClass instanceof PsiExtensibleClass) )
@@ -277,6 +380,7 @@ class PropertyInference
 
   private void makeVal( PropAttrs getAttr )
   {
+    record( val.class, getAttr, null );
     String fieldName = getAttr._name;
     PsiClass psiClass = getAttr._m.getContainingClass();
     if( !(psiClass instanceof PsiExtensibleClass) )
@@ -313,6 +417,7 @@ class PropertyInference
 
   private void makeWo( PropAttrs setAttr )
   {
+    record( set.class, null, setAttr );
     String fieldName = setAttr._name;
     PsiClass psiClass = setAttr._m.getContainingClass();
     if( !(psiClass instanceof PsiExtensibleClass) )
@@ -347,6 +452,16 @@ class PropertyInference
     addField( propField, varClass, exField != null ? getSmartPointer( exField, GETTER_TAG ) : null, setAttr._m );
   }
 
+  private void record( Class<? extends Annotation> varClass, PropAttrs getAttr, PropAttrs setAttr )
+  {
+    if( _inferred != null )
+    {
+      _inferred.add( new LibraryPropertyCache.Inferred( varClass,
+        getAttr == null ? null : LibraryPropertyCache.signature( getAttr._m ),
+        setAttr == null ? null : LibraryPropertyCache.signature( setAttr._m ) ) );
+    }
+  }
+
   @Nullable
   private PsiMethod getSmartPointer( PsiField exField, Key<SmartPsiElementPointer<PsiMethod>> setterTag )
   {
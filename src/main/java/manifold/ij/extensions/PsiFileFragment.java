@@ -20,7 +20,6 @@
 package manifold.ij.extensions;
 
 import com.intellij.lang.ASTNode;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.platform.syntax.psi.PsiSyntaxBuilderFactoryHook;
 import com.intellij.psi.PsiElement;
@@ -34,8 +33,6 @@ import manifold.ij.core.ManApplicationLoadListener;
 import manifold.ij.core.ManModule;
 import manifold.ij.core.ManProject;
 import manifold.ij.util.FileUtil;
-import manifold.ij.util.ReparseUtil;
-import manifold.ij.util.SlowOperationsUtil;
 import manifold.internal.javac.FragmentProcessor;
 import manifold.internal.javac.HostKind;
 import manifold.util.ReflectUtil;
@@ -57,14 +54,15 @@ interface PsiFileFragment extends ASTNode, PsiElement
   }
   default void handleFragments( PsiJavaFile containingFile )
   {
-    if( !getText().contains( FragmentProcessor.FRAGMENT_START ) ||
-      !getText().contains( FragmentProcessor.FRAGMENT_END ) )
+    String hostText = getText();
+    if( !hostText.contains( FragmentProcessor.FRAGMENT_START ) ||
+      !hostText.contains( FragmentProcessor.FRAGMENT_END ) )
     {
       // not a fragment
       return;
     }
 
-    if( getText().contains( "IntellijIdeaRulezzz" ) )
+    if( hostText.contains( "IntellijIdeaRulezzz" ) )
     {
       // from completion, ignore this change
       return;
@@ -88,7 +86,6 @@ interface PsiFileFragment extends ASTNode, PsiElement
       }
     }
 
-    String hostText = getText();
     FragmentProcessor fragmentProcessor = FragmentProcessor.instance();
     HostKind style = getStyle();
     FragmentProcessor.Fragment f = fragmentProcessor.parseFragment( 0, hostText, style );
@@ -122,41 +119,13 @@ interface PsiFileFragment extends ASTNode, PsiElement
       // Cache this to handle cases where the ManifoldPsiClassCache is refreshed e.g., after a maven/gradle refresh.
       // Since the token for the string literal or comment must be reparsed/tokenized when changed, the cache will always
       // be current.
-      FragmentCache.instance().add( psiFileFragmentPointer );
-
-      PsiJavaFile finalContainingFile = containingFile;
-      // note, this must be posted to the event thread so as not to hold this element's lock while indirectly accessing
-      // ManifoldPsiClassCache's monitor, otherwise deadlock will result
-      ApplicationManager.getApplication().invokeLater( () ->
-        ApplicationManager.getApplication().runReadAction( () -> {
-          // note see ide.slow.operations.assertion.manifold.fragments registrykey defined in plugin.xml
-          SlowOperationsUtil.allowSlowOperation( "manifold.fragments", () -> {
-              deletedFragment( ManProject.manProjectFrom( finalContainingFile.getProject() ), fragment );
-              createdFragment( ManProject.manProjectFrom( finalContainingFile.getProject() ), fragment );
-            } );
-        } ) );
-//todo: need to do this, but it bogs down the editor's background processing, cpu fan is constant, takes a while to finish error feedback traffic light, etc.
-      if( this instanceof ManDefaultASTFactoryImpl.ManPsiCommentImpl )
-      {
-        // necessary when renaming a file fragment's type
-        ReparseUtil.instance().rerunAnnotators( containingFile, "Manifold fragment/inline in comment" );
-      }
-    }
-  }
-
-  default void createdFragment( ManProject project, IFileFragment file )
-  {
-    project.getFileModificationManager().getManRefresher().created( file );
-  }
+      FragmentCache.instance().add( psiFileFragmentPointer, fragment, containingFile );
 
-  default void deletedFragment( ManProject project, IFileFragment file )
-  {
-    project.getFileModificationManager().getManRefresher().deleted( file );
-  }
-
-  default void modifiedFragment( ManProject project, IFileFragment file )
-  {
-    project.getFileModificationManager().getManRefresher().modified( file );
+      // the type refresh is batched with other fragment changes, one refresh per quiet period instead of per keystroke.
+      // Annotators are rerun for comment fragments, necessary when renaming a file fragment's type
+      ManProject.manProjectFrom( project ).getFileModificationManager().fragmentChanged( fragment, containingFile,
+        this instanceof ManDefaultASTFactoryImpl.ManPsiCommentImpl );
+    }
   }
 
   default int getStartOffsetInParent()
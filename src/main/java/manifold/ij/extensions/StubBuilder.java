@@ -52,18 +52,35 @@ public class StubBuilder
     return make( fqn, module, true );
   }
   public SrcClass make( String fqn, ManModule module, boolean includeExtenstions )
+  {
+    PsiClass psiClass = findClass( fqn, module );
+    if( psiClass == null )
+    {
+      return null;
+    }
+    return makeSrcClass( fqn, psiClass, module, includeExtenstions );
+  }
+
+  /**
+   * Same as {@link #make(String, ManModule, boolean)} with {@code psiClass} already found via {@link #findClass}.
+   */
+  SrcClass make( String fqn, PsiClass psiClass, ManModule module, boolean includeExtenstions )
+  {
+    return makeSrcClass( fqn, psiClass, module, includeExtenstions );
+  }
+
+  /**
+   * @return The class {@link #make} stubs for {@code fqn}
+   */
+  static PsiClass findClass( String fqn, ManModule module )
   {
     JavaPsiFacade javaPsiFacade = JavaPsiFacade.getInstance( module.getIjProject() );
     PsiClass psiClass = javaPsiFacade.findClass( fqn, GlobalSearchScope.moduleWithDependenciesAndLibrariesScope( module.getIjModule() ) );
     if( psiClass == null )
     {
       psiClass = javaPsiFacade.findClass( fqn, GlobalSearchScope.allScope( module.getIjProject() ) );
-      if( psiClass == null )
-      {
-        return null;
-      }
     }
-    return makeSrcClass( fqn, psiClass, module, includeExtenstions );
+    return psiClass;
   }
 
   private SrcClass makeSrcClass( String fqn, PsiClass psiClass, ManModule module, boolean includeExtensions )
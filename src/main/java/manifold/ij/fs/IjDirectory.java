@@ -35,7 +35,7 @@ import manifold.api.fs.IResource;
 
 public class IjDirectory extends IjResource implements IDirectory
 {
-  IjDirectory( IjFileSystem fs, VirtualFile dir )
+  protected IjDirectory( IjFileSystem fs, VirtualFile dir )
   {
     super( fs, dir );
   }
@@ -84,7 +84,7 @@ public class IjDirectory extends IjResource implements IDirectory
       {
         if( child.isDirectory() )
         {
-          result.add( new IjDirectory( getFileSystem(), child ) );
+          result.add( getFileSystem().getIDirectory( child ) );
         }
       }
     }
@@ -101,7 +101,7 @@ public class IjDirectory extends IjResource implements IDirectory
       {
         if( !child.isDirectory() )
         {
-          result.add( new IjFile( getFileSystem(), child ) );
+          result.add( getFileSystem().getIFile( child ) );
         }
       }
     }
@@ -41,24 +41,20 @@ import manifold.api.fs.IFile;
 
 public class IjFile extends IjResource implements IFile
 {
-  private Charset charset = StandardCharsets.UTF_8;
-
-  IjFile( IjFileSystem fs, VirtualFile file )
+  protected IjFile( IjFileSystem fs, VirtualFile file )
   {
     super( fs, file );
-    if( file.isCharsetSet() )
-    {
-      charset = file.getCharset();
-    }
   }
 
-  IjFile( IjFileSystem fs, String file )
+  protected IjFile( IjFileSystem fs, String file )
   {
     super( fs, file );
-    if( _virtualFile != null && _virtualFile.isCharsetSet() )
-    {
-      charset = _virtualFile.getCharset();
-    }
+  }
+
+  private Charset getCharset()
+  {
+    // read on demand, instances are interned and the file's charset may change
+    return _virtualFile != null && _virtualFile.isCharsetSet() ? _virtualFile.getCharset() : StandardCharsets.UTF_8;
   }
 
   @Override
@@ -75,7 +71,7 @@ public class IjFile extends IjResource implements IFile
     String temporaryBuffer = getTemporaryBuffer( this );
     if( temporaryBuffer != null )
     {
-      return new ByteArrayInputStream( temporaryBuffer.getBytes( charset ) );
+      return new ByteArrayInputStream( temporaryBuffer.getBytes( getCharset() ) );
     }
     else
     {
@@ -30,6 +30,7 @@ import com.intellij.openapi.vfs.impl.http.HttpVirtualFile;
 import com.intellij.openapi.vfs.impl.http.RemoteFileInfo;
 import com.intellij.openapi.vfs.impl.jar.JarFileSystemImpl;
 import com.intellij.openapi.vfs.impl.local.LocalFileSystemImpl;
+import com.intellij.util.containers.ContainerUtil;
 import java.io.File;
 import java.net.JarURLConnection;
 import java.net.URI;
@@ -57,7 +58,10 @@ public class IjFileSystem extends BaseService implements IFileSystem
   private final IDirectoryResourceExtractor _dirExtractor;
   private final IFileResourceExtractor _fileExtractor;
   private final ReentrantLock _lock;
-
+  private final Map<VirtualFile, IjFile> _files;
+  private final Map<VirtualFile, IjDirectory> _dirs;
+  private final Map<VirtualFile, IjJarDirectory> _jarDirs;
+  private volatile boolean _interning;
 
   public IjFileSystem( ManProject project )
   {
@@ -66,6 +70,10 @@ public class IjFileSystem extends BaseService implements IFileSystem
     _dirExtractor = new IDirectoryResourceExtractor();
     _fileExtractor = new IFileResourceExtractor();
     _lock = new ReentrantLock();
+    _files = ContainerUtil.createConcurrentWeakValueMap();
+    _dirs = ContainerUtil.createConcurrentWeakValueMap();
+    _jarDirs = ContainerUtil.createConcurrentWeakValueMap();
+    _interning = true;
   }
 
   public ManProject getProject()
@@ -102,9 +110,9 @@ public class IjFileSystem extends BaseService implements IFileSystem
       {
         throw new RuntimeException( "Cannot load Jar file for: " + pathString );
       }
-      return new IjJarDirectory( this, file );
+      return getIJarDirectory( file );
     }
-    return file != null ? new IjDirectory( this, file ) : new IjDirectory( this, pathString );
+    return file != null ? getIDirectory( file ) : new IjDirectory( this, pathString );
   }
 
   @Override
@@ -122,7 +130,7 @@ public class IjFileSystem extends BaseService implements IFileSystem
     {
       file = JarFileSystemImpl.getInstance().findFileByPath( pathString );
     }
-    return file != null ? new IjFile( this, file ) : new IjFile( this, pathString );
+    return file != null ? getIFile( file ) : new IjFile( this, pathString );
   }
 
 
@@ -137,13 +145,18 @@ public class IjFileSystem extends BaseService implements IFileSystem
       }
     }
 
-    return new IjFile( this, file );
+    return _interning ? _files.computeIfAbsent( file, f -> new IjFile( this, f ) ) : new IjFile( this, file );
   }
 
 
   public IjDirectory getIDirectory( VirtualFile file )
   {
-    return new IjDirectory( this, file );
+    return _interning ? _dirs.computeIfAbsent( file, f -> new IjDirectory( this, f ) ) : new IjDirectory( this, file );
+  }
+
+  IjJarDirectory getIJarDirectory( VirtualFile file )
+  {
+    return _interning ? _jarDirs.computeIfAbsent( file, f -> new IjJarDirectory( this, f ) ) : new IjJarDirectory( this, file );
   }
 
 
@@ -173,14 +186,34 @@ public class IjFileSystem extends BaseService implements IFileSystem
     }
   }
 
+  /**
+   * Resources backed by a {@link VirtualFile} are interned, the same instance is returned per file for as long as it is
+   * referenced. Interning is on unless caching is disabled with {@link CachingMode#NO_CACHING}.
+   */
   @Override
   public void setCachingMode( CachingMode cachingMode )
   {
+    _interning = cachingMode != CachingMode.NO_CACHING;
+    if( !_interning )
+    {
+      clearAllCaches();
+    }
   }
 
+  /**
+   * Purge interned resources. Must be called when files move or are renamed since a resource's path is fixed when it
+   * is created.
+   */
   @Override
   public void clearAllCaches()
   {
+    _files.clear();
+    _dirs.clear();
+    _jarDirs.clear();
+    synchronized( CACHED_FILE_SYSTEM_LOCK )
+    {
+      _cachedDirInfo.clear();
+    }
   }
 
   private abstract class ResourceExtractor<J extends IResource>
@@ -41,14 +41,14 @@ public class IjJarDirectory extends IjDirectory
   public IDirectory dir( String relativePath )
   {
     VirtualFile child = _virtualFile.findFileByRelativePath( normalize( relativePath ) );
-    return child == null ? null : new IjJarDirectory( getFileSystem(), child );
+    return child == null ? null : getFileSystem().getIJarDirectory( child );
   }
 
   @Override
   public IFile file( String path )
   {
     VirtualFile child = _virtualFile.findFileByRelativePath( normalize( path ) );
-    return child == null ? null : new IjFile( getFileSystem(), child );
+    return child == null ? null : getFileSystem().getIFile( child );
   }
 
   private String normalize( String relativePath )
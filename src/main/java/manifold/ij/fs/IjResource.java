@@ -68,7 +68,7 @@ public abstract class IjResource implements IResource
     {
       if( _virtualFile.getParent() != null )
       {
-        return new IjDirectory( getFileSystem(), _virtualFile.getParent() );
+        return getFileSystem().getIDirectory( _virtualFile.getParent() );
       }
       if( !(_virtualFile instanceof LightVirtualFile) || _path.length() <= 3 )
       {
@@ -27,8 +27,6 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.templateLanguages.TemplateDataElementType;
 import com.intellij.psi.templateLanguages.TemplateLanguageFileViewProvider;
 import com.intellij.psi.tree.IElementType;
-import java.util.ArrayList;
-import java.util.List;
 import org.jetbrains.annotations.NotNull;
 
 
@@ -75,9 +73,9 @@ public class ManTemplateDataElementType extends TemplateDataElementType
   private CharSequence createTemplateText( @NotNull CharSequence sourceCode,
                                            @NotNull Lexer baseLexer,
                                            @NotNull RangeCollector outerRangesCollector,
-                                           List<Integer> expressionOffsets,
-                                           List<Integer> statementOffsets,
-                                           List<Integer> directiveOffsets )
+                                           OffsetTable.Builder expressionOffsets,
+                                           OffsetTable.Builder statementOffsets,
+                                           OffsetTable.Builder directiveOffsets )
   {
     StringBuilder result = new StringBuilder( sourceCode.length() );
     baseLexer.start( sourceCode );
@@ -118,7 +116,7 @@ public class ManTemplateDataElementType extends TemplateDataElementType
     return result;
   }
 
-  private Integer offsetNoWhitespace( StringBuilder result, int offset )
+  private int offsetNoWhitespace( StringBuilder result, int offset )
   {
     while( result.length() > offset && Character.isWhitespace( result.charAt( offset ) ) )
     {
@@ -133,14 +131,14 @@ public class ManTemplateDataElementType extends TemplateDataElementType
                                         final TemplateLanguageFileViewProvider viewProvider,
                                         @NotNull RangeCollector outerRangesCollector )
   {
-    List<Integer> expressionOffsets = new ArrayList<>();
-    List<Integer> statementOffsets = new ArrayList<>();
-    List<Integer> directiveOffsets = new ArrayList<>();
+    OffsetTable.Builder expressionOffsets = new OffsetTable.Builder();
+    OffsetTable.Builder statementOffsets = new OffsetTable.Builder();
+    OffsetTable.Builder directiveOffsets = new OffsetTable.Builder();
     CharSequence templateSourceCode = createTemplateText( sourceCode, createBaseLexer( viewProvider ), outerRangesCollector, expressionOffsets, statementOffsets, directiveOffsets );
     PsiFile file = createPsiFileFromSource( templateLanguage, templateSourceCode, psiFile.getManager() );
-    file.putUserData( EXPR_OFFSETS, expressionOffsets );
-    file.putUserData( STMT_OFFSETS, statementOffsets );
-    file.putUserData( DIRECTIVE_OFFSETS, directiveOffsets );
+    file.putUserData( EXPR_OFFSETS, expressionOffsets.build() );
+    file.putUserData( STMT_OFFSETS, statementOffsets.build() );
+    file.putUserData( DIRECTIVE_OFFSETS, directiveOffsets.build() );
     return file;
   }
 
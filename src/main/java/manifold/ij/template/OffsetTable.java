@@ -0,0 +1,122 @@
+/*
+ *
+ *  * Copyright (c) 2022 - Manifold Systems LLC
+ *  *
+ *  * Licensed under the Apache License, Version 2.0 (the "License");
+ *  * you may not use this file except in compliance with the License.
+ *  * You may obtain a copy of the License at
+ *  *
+ *  *       http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  * Unless required by applicable law or agreed to in writing, software
+ *  * distributed under the License is distributed on an "AS IS" BASIS,
+ *  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  * See the License for the specific language governing permissions and
+ *  * limitations under the License.
+ *
+ *
+ */
+
+package manifold.ij.template;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, sorted set of offsets into the Java source produced from a template, see {@link IManTemplateOffsets}.
+ * Lookups are binary searches over a primitive array.
+ */
+public final class OffsetTable
+{
+  public static final OffsetTable EMPTY = new OffsetTable( new int[0] );
+
+  private final int[] _offsets;
+
+  private OffsetTable( int[] offsets )
+  {
+    _offsets = offsets;
+  }
+
+  public int size()
+  {
+    return _offsets.length;
+  }
+
+  public boolean isEmpty()
+  {
+    return _offsets.length == 0;
+  }
+
+  public int get( int index )
+  {
+    return _offsets[index];
+  }
+
+  public boolean contains( int offset )
+  {
+    return Arrays.binarySearch( _offsets, offset ) >= 0;
+  }
+
+  /**
+   * @return The first offset greater than {@code pos}, or {@code end} if there is none. Returns -1 if the table is
+   * empty.
+   */
+  public int findNext( int pos, int end )
+  {
+    if( _offsets.length == 0 )
+    {
+      return -1;
+    }
+    int index = indexAfter( pos );
+    return index < _offsets.length ? _offsets[index] : end;
+  }
+
+  /**
+   * @return The index of the first offset greater than {@code pos}
+   */
+  private int indexAfter( int pos )
+  {
+    int low = 0;
+    int high = _offsets.length - 1;
+    while( low <= high )
+    {
+      int mid = (low + high) >>> 1;
+      if( _offsets[mid] <= pos )
+      {
+        low = mid + 1;
+      }
+      else
+      {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  public static class Builder
+  {
+    private int[] _offsets = new int[16];
+    private int _size;
+
+    public Builder add( int offset )
+    {
+      if( _size == _offsets.length )
+      {
+        _offsets = Arrays.copyOf( _offsets, _size * 2 );
+      }
+      _offsets[_size++] = offset;
+      return this;
+    }
+
+    public OffsetTable build()
+    {
+      if( _size == 0 )
+      {
+        return EMPTY;
+      }
+      int[] offsets = Arrays.copyOf( _offsets, _size );
+      // offsets are added in order as the source is produced, sorting is a formality
+      Arrays.sort( offsets );
+      return new OffsetTable( offsets );
+    }
+  }
+}
@@ -26,9 +26,8 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.LanguageLevelProjectExtension;
 import com.intellij.pom.java.LanguageLevel;
 import com.intellij.psi.impl.source.tree.SharedImplUtil;
-import java.util.Collections;
-import java.util.List;
 import manifold.ij.template.IManTemplateOffsets;
+import manifold.ij.template.OffsetTable;
 import manifold.util.ReflectUtil;
 
 /**
@@ -48,9 +47,9 @@ import manifold.util.ReflectUtil;
  */
 class ManTemplateJavaLexer extends DelegateLexer
 {
-  private List<Integer> _exprOffsets;
-  private List<Integer> _stmtOffsets;
-  private List<Integer> _directiveOffsets;
+  private OffsetTable _exprOffsets;
+  private OffsetTable _stmtOffsets;
+  private OffsetTable _directiveOffsets;
 
   ManTemplateJavaLexer( Project project, ASTNode chameleon )
   {
@@ -70,32 +69,32 @@ class ManTemplateJavaLexer extends DelegateLexer
   {
     if( chameleon == null )
     {
-      _exprOffsets = Collections.emptyList();
-      _stmtOffsets = Collections.emptyList();
-      _directiveOffsets = Collections.emptyList();
+      _exprOffsets = OffsetTable.EMPTY;
+      _stmtOffsets = OffsetTable.EMPTY;
+      _directiveOffsets = OffsetTable.EMPTY;
       return;
     }
 
     ManTemplateJavaFile psiFile = (ManTemplateJavaFile)SharedImplUtil.getContainingFile( chameleon );
     _exprOffsets = psiFile.getUserData( IManTemplateOffsets.EXPR_OFFSETS );
-    _exprOffsets = _exprOffsets == null ? Collections.emptyList() : _exprOffsets;
+    _exprOffsets = _exprOffsets == null ? OffsetTable.EMPTY : _exprOffsets;
     _stmtOffsets = psiFile.getUserData( IManTemplateOffsets.STMT_OFFSETS );
-    _stmtOffsets = _stmtOffsets == null ? Collections.emptyList() : _stmtOffsets;
+    _stmtOffsets = _stmtOffsets == null ? OffsetTable.EMPTY : _stmtOffsets;
     _directiveOffsets = psiFile.getUserData( IManTemplateOffsets.DIRECTIVE_OFFSETS );
-    _directiveOffsets = _directiveOffsets == null ? Collections.emptyList() : _directiveOffsets;
+    _directiveOffsets = _directiveOffsets == null ? OffsetTable.EMPTY : _directiveOffsets;
   }
 
-  public List<Integer> getExprOffsets()
+  public OffsetTable getExprOffsets()
   {
     return _exprOffsets;
   }
 
-  public List<Integer> getStmtOffsets()
+  public OffsetTable getStmtOffsets()
   {
     return _stmtOffsets;
   }
 
-  public List<Integer> getDirectiveOffsets()
+  public OffsetTable getDirectiveOffsets()
   {
     return _directiveOffsets;
   }
@@ -118,13 +117,12 @@ class ManTemplateJavaLexer extends DelegateLexer
     }
   }
 
-  @SafeVarargs
-  public static int findNextOffset( int pos, int end, List<Integer>... lists )
+  public static int findNextOffset( int pos, int end, OffsetTable... tables )
   {
-    int next = findNextOffset( lists[0], pos, end );
-    for( int i = 1; i < lists.length; i++ )
+    int next = tables[0].findNext( pos, end );
+    for( int i = 1; i < tables.length; i++ )
     {
-      int temp = findNextOffset( lists[i], pos, end );
+      int temp = tables[i].findNext( pos, end );
       next = better( next, temp );
     }
     return next;
@@ -138,34 +136,4 @@ class ManTemplateJavaLexer extends DelegateLexer
     }
     return next;
   }
-
-  private static int findNextOffset( List<Integer> list, int pos, int end )
-  {
-    if( list.isEmpty() )
-    {
-      return -1;
-    }
-
-    int low = 0;
-    int high = list.size() - 1;
-
-    while( low <= high )
-    {
-      int mid = (low + high) >>> 1;
-      int midVal = list.get( mid );
-      if( midVal <= pos )
-      {
-        low = mid + 1;
-      }
-      else
-      {
-        high = mid - 1;
-      }
-    }
-    if( list.size() <= low )
-    {
-      return end;
-    }
-    return list.get( low );
-  }
 }
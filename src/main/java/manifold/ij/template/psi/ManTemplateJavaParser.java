@@ -27,16 +27,16 @@ import com.intellij.lang.java.parser.ExpressionParser;
 import com.intellij.lang.java.parser.JavaParser;
 import com.intellij.lang.java.parser.JavaParserUtil;
 import com.intellij.lexer.Lexer;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.roots.LanguageLevelProjectExtension;
 import com.intellij.pom.java.LanguageLevel;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.impl.source.resolve.FileContextUtil;
 import com.intellij.psi.tree.IElementType;
-import java.util.Collections;
-import java.util.List;
 import manifold.ext.rt.api.Jailbreak;
 import manifold.ij.template.IManTemplateOffsets;
+import manifold.ij.template.OffsetTable;
 import org.jetbrains.annotations.NotNull;
 
 public class ManTemplateJavaParser implements PsiParser
@@ -51,8 +51,8 @@ public class ManTemplateJavaParser implements PsiParser
     PsiBuilder.Marker rootMarker = builder.mark();
     @Jailbreak JavaParser javaParser = new JavaParser();
     ExpressionParser exprParser = javaParser.getExpressionParser();
-    List<Integer> exprOffsets = getExpressionOffsets( builder );
-    List<Integer> directiveOffsets = getDirectiveOffsets( builder );
+    OffsetTable exprOffsets = getExpressionOffsets( builder );
+    OffsetTable directiveOffsets = getDirectiveOffsets( builder );
     MyStatementParser stmtParser = new MyStatementParser( javaParser, this, exprOffsets, directiveOffsets );
     javaParser.myStatementParser = stmtParser;
 
@@ -128,7 +128,7 @@ public class ManTemplateJavaParser implements PsiParser
     }
   }
 
-  private List<Integer> getExpressionOffsets( @NotNull PsiBuilder builder )
+  private OffsetTable getExpressionOffsets( @NotNull PsiBuilder builder )
   {
     if( builder instanceof PsiBuilderImpl )
     {
@@ -140,10 +140,10 @@ public class ManTemplateJavaParser implements PsiParser
     }
 
     PsiFile psiFile = builder.getUserData( FileContextUtil.CONTAINING_FILE_KEY );
-    return psiFile == null ? Collections.emptyList() : psiFile.getUserData( IManTemplateOffsets.EXPR_OFFSETS );
+    return getOffsets( psiFile, IManTemplateOffsets.EXPR_OFFSETS );
   }
 
-  private List<Integer> getDirectiveOffsets( @NotNull PsiBuilder builder )
+  private OffsetTable getDirectiveOffsets( @NotNull PsiBuilder builder )
   {
     if( builder instanceof PsiBuilderImpl )
     {
@@ -155,10 +155,10 @@ public class ManTemplateJavaParser implements PsiParser
     }
 
     PsiFile psiFile = builder.getUserData( FileContextUtil.CONTAINING_FILE_KEY );
-    return psiFile == null ? Collections.emptyList() : psiFile.getUserData( IManTemplateOffsets.DIRECTIVE_OFFSETS );
+    return getOffsets( psiFile, IManTemplateOffsets.DIRECTIVE_OFFSETS );
   }
 
-  private List<Integer> getStatementOffsets( @NotNull PsiBuilder builder )
+  private OffsetTable getStatementOffsets( @NotNull PsiBuilder builder )
   {
     if( builder instanceof PsiBuilderImpl )
     {
@@ -170,6 +170,12 @@ public class ManTemplateJavaParser implements PsiParser
     }
 
     PsiFile psiFile = builder.getUserData( FileContextUtil.CONTAINING_FILE_KEY );
-    return psiFile == null ? Collections.emptyList() : psiFile.getUserData( IManTemplateOffsets.STMT_OFFSETS );
+    return getOffsets( psiFile, IManTemplateOffsets.STMT_OFFSETS );
+  }
+
+  private static OffsetTable getOffsets( PsiFile psiFile, Key<OffsetTable> key )
+  {
+    OffsetTable offsets = psiFile == null ? null : psiFile.getUserData( key );
+    return offsets == null ? OffsetTable.EMPTY : offsets;
   }
 }
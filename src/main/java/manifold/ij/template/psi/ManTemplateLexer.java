@@ -21,36 +21,61 @@ package manifold.ij.template.psi;
 
 import com.intellij.lexer.LexerBase;
 import com.intellij.psi.tree.IElementType;
-import manifold.rt.api.util.Stack;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import static manifold.ij.template.psi.ManTemplateTokenType.*;
 
+/**
+ * Tokenizes lazily, one token (or a content/code token and the delimiter ending it) per advance. The state at a token's
+ * start is the type of the preceding token plus whether code is inside a string or char literal, which is all the
+ * lexer needs to restart there, see {@link #getState()}. Content-level positions, outside code and comments, have the
+ * initial state 0, which is where IntelliJ's highlighter relexes from after an edit instead of the start of the file.
+ */
 public class ManTemplateLexer extends LexerBase
 {
+  private static final ManTemplateTokenType[] STATE_TYPES = {
+    CONTENT, COMMENT, EXPR, STMT, DIRECTIVE,
+    EXPR_BRACE_BEGIN, EXPR_BRACE_END, EXPR_ANGLE_BEGIN, STMT_ANGLE_BEGIN, DIR_ANGLE_BEGIN, ANGLE_END,
+    COMMENT_BEGIN, COMMENT_END
+  };
+  private static final int STRING_FLAG = 1;
+  private static final int CHAR_LITERAL_FLAG = 2;
+  private static final int TYPE_SHIFT = 2;
+
   private CharSequence myBuffer;
   private int myEndOffset;
 
+  // position the next scan starts from
   private int _index;
-  private Stack<Token> _tokens;
-  private CharSequence _text;
-  private StringBuilder _stuff;
-
-  private int _tokenIndex;
+  // the type of the last token scanned, determines how the next scan proceeds
+  private ManTemplateTokenType _top;
   private boolean _isParsingString;
   private boolean _isParsingCharLiteral;
 
+  // current token
+  private ManTemplateTokenType _tokenType;
+  private int _tokenStart;
+  private int _tokenEnd;
+  private int _tokenState;
+
+  // delimiter token scanned along with the current token, if any
+  private ManTemplateTokenType _nextType;
+  private int _nextStart;
+  private int _nextEnd;
+  private int _nextState;
+
   @Override
   public void start( @NotNull CharSequence buffer, int startOffset, int endOffset, int initialState )
   {
     myBuffer = buffer;
     myEndOffset = endOffset;
 
-    _tokens = new Stack<>();
-    _text = buffer.subSequence( startOffset, endOffset );
-    _index = initialState - startOffset;
-    tokenize();
-    _tokenIndex = -1;
+    _index = startOffset;
+    int typeIndex = initialState >> TYPE_SHIFT;
+    _top = typeIndex > 0 && typeIndex <= STATE_TYPES.length ? STATE_TYPES[typeIndex - 1] : null;
+    _isParsingString = (initialState & STRING_FLAG) != 0;
+    _isParsingCharLiteral = (initialState & CHAR_LITERAL_FLAG) != 0;
+    _nextType = null;
     nextToken();
   }
 
@@ -60,34 +85,32 @@ public class ManTemplateLexer extends LexerBase
     nextToken();
   }
 
+  /**
+   * @return The state at the start of the current token
+   */
   @Override
   public int getState()
   {
-    return getToken() == null ? 0 : myEndOffset;
-  }
-
-  private Token getToken()
-  {
-    return _tokenIndex < 0 ? null : _tokens.get( _tokenIndex );
+    return _tokenType == null ? 0 : _tokenState;
   }
 
   @Nullable
   @Override
   public IElementType getTokenType()
   {
-    return getToken() == null ? null : getToken()._type;
+    return _tokenType;
   }
 
   @Override
   public int getTokenStart()
   {
-    return getToken() == null ? 0 : getToken()._offset;
+    return _tokenType == null ? 0 : _tokenStart;
   }
 
   @Override
   public int getTokenEnd()
   {
-    return getToken() == null ? 0 : getToken()._offset + getToken()._value.length();
+    return _tokenType == null ? 0 : _tokenEnd;
   }
 
   @Override
@@ -105,37 +128,73 @@ public class ManTemplateLexer extends LexerBase
 
   private void nextToken()
   {
-    if( _tokenIndex+1 < _tokens.size() )
+    if( _nextType != null )
     {
-      _tokenIndex++;
+      setToken( _nextType, _nextStart, _nextEnd, _nextState );
+      _nextType = null;
     }
     else
     {
-      _tokenIndex = -1;
+      _tokenType = null;
+      tokenize();
     }
   }
 
+  private void setToken( ManTemplateTokenType type, int start, int end, int state )
+  {
+    _tokenType = type;
+    _tokenStart = start;
+    _tokenEnd = end;
+    _tokenState = state;
+  }
+
+  private int makeState()
+  {
+    if( !isInCode() && !isParsingString() && !isParsingCharLiteral() )
+    {
+      // content level, lexes the same as the start of the file; the editor highlighter restarts only at the initial
+      // state for lexers that aren't a RestartableLexer
+      return 0;
+    }
+
+    int typeIndex = 0;
+    for( int i = 0; i < STATE_TYPES.length; i++ )
+    {
+      if( STATE_TYPES[i] == _top )
+      {
+        typeIndex = i + 1;
+        break;
+      }
+    }
+    return (typeIndex << TYPE_SHIFT) |
+           (_isParsingString ? STRING_FLAG : 0) |
+           (_isParsingCharLiteral ? CHAR_LITERAL_FLAG : 0);
+  }
+
+  /**
+   * Scans from {@link #_index} to the next delimiter, producing the content or code preceding it, if any, as the
+   * current token and the delimiter as the next token.
+   */
   private void tokenize()
   {
-    _stuff = new StringBuilder();
-    _isParsingString = false;
-    _isParsingCharLiteral = false;
+    int stuffStart = _index;
+    int stuffState = makeState();
+    ManTemplateTokenType top = _top;
     int index = _index;
     boolean escaped = false;
     while( true )
     {
-      if( index >= _text.length() )
+      if( index >= myEndOffset )
       {
         break;
       }
 
       int before = index;
-      char c = _text.charAt( index );
+      char c = myBuffer.charAt( index );
 
-      if( !escaped && c == '\\' && !isInCode() && _text.length() > index+1 &&
+      if( !escaped && c == '\\' && !isInCode() && myEndOffset > index+1 &&
           (charIs( index+1, '<' ) || charIs( index+1, '$' )) )
       {
-        _stuff.append( c );
         escaped = true;
         index++;
         continue;
@@ -154,9 +213,8 @@ public class ManTemplateLexer extends LexerBase
               index++;
               if( charIs( index, '>' ) )
               {
-                pushStuff();
-                pushToken( COMMENT_END, ++index );
-                continue;
+                pushToken( stuffStart, stuffState, top, COMMENT_END, before, ++index );
+                return;
               }
             }
           }
@@ -169,9 +227,8 @@ public class ManTemplateLexer extends LexerBase
           index++;
           if( charIs( index, '{' ) )
           {
-            pushStuff();
-            pushToken( EXPR_BRACE_BEGIN, ++index );
-            continue;
+            pushToken( stuffStart, stuffState, top, EXPR_BRACE_BEGIN, before, ++index );
+            return;
           }
         }
         else if( c == '<' && !isInCode() && !escaped )
@@ -179,56 +236,52 @@ public class ManTemplateLexer extends LexerBase
           index++;
           if( charIs( index, '%' ) )
           {
-            pushStuff();
             index++;
             if( charIs( index, '=' ) )
             {
-              pushToken( EXPR_ANGLE_BEGIN, ++index );
-              continue;
+              pushToken( stuffStart, stuffState, top, EXPR_ANGLE_BEGIN, before, ++index );
+              return;
             }
             else if( charIs( index, '@' ) )
             {
-              pushToken( DIR_ANGLE_BEGIN, ++index );
-              continue;
+              pushToken( stuffStart, stuffState, top, DIR_ANGLE_BEGIN, before, ++index );
+              return;
             }
             else if( charIs( index, '-' ) )
             {
               if( charIs( index + 1, '-' ) )
               {
-                pushToken( COMMENT_BEGIN, index += 2 );
-                continue;
+                pushToken( stuffStart, stuffState, top, COMMENT_BEGIN, before, index + 2 );
+                return;
               }
             }
 
-            pushToken( STMT_ANGLE_BEGIN, index );
-            continue;
+            pushToken( stuffStart, stuffState, top, STMT_ANGLE_BEGIN, before, index );
+            return;
           }
         }
         else if( c == '}' && isTop( EXPR_BRACE_BEGIN ) && isInCode() && !isParsingString() && !isParsingCharLiteral() )
         {
-          pushStuff();
-          pushToken( EXPR_BRACE_END, ++index );
-          continue;
+          pushToken( stuffStart, stuffState, top, EXPR_BRACE_END, before, ++index );
+          return;
         }
         else if( c == '%' && isInCode() && !isParsingString() )
         {
           index++;
           if( charIs( index, '>' ) )
           {
-            pushStuff();
-            pushToken( ANGLE_END, ++index );
-            continue;
+            pushToken( stuffStart, stuffState, top, ANGLE_END, before, ++index );
+            return;
           }
         }
       }
-      _stuff.append( c );
       index = before + 1;
       setParsingString( c, before );
       setParsingCharLiteral( c, before );
       escaped = false;
     }
-    
-    pushStuff();
+
+    pushStuff( stuffStart, stuffState, top, index );
   }
 
   private void setParsingString( char c, int index )
@@ -277,17 +330,21 @@ public class ManTemplateLexer extends LexerBase
 
   private boolean charIs( int index, char c )
   {
-    return _text.length() > index && _text.charAt( index ) == c;
+    return index >= 0 && myEndOffset > index && myBuffer.charAt( index ) == c;
   }
 
-  private void pushStuff()
+  /**
+   * Makes the content or code between {@code start} and {@code end}, if any, the current token.
+   *
+   * @return true if there is a token
+   */
+  private boolean pushStuff( int start, int state, ManTemplateTokenType beginType, int end )
   {
-    if( _stuff == null || _stuff.length() == 0 )
+    if( end <= start )
     {
-      return;
+      return false;
     }
 
-    ManTemplateTokenType beginType = _tokens.size() == 0 ? null : _tokens.peek()._type;
     ManTemplateTokenType stuffType;
     if( beginType == EXPR_BRACE_BEGIN ||
         beginType == EXPR_ANGLE_BEGIN )
@@ -310,15 +367,36 @@ public class ManTemplateLexer extends LexerBase
     {
       stuffType = CONTENT;
     }
-    _tokens.push( new Token( stuffType, _index, _stuff.toString() ) );
-    _index += _stuff.length();
-    _stuff = new StringBuilder();
+    setToken( stuffType, start, end, state );
+    _top = stuffType;
+    _index = end;
+    return true;
   }
 
-  private void pushToken( ManTemplateTokenType tokenType, int index )
+  /**
+   * Makes the delimiter between {@code tokenStart} and {@code tokenEnd} the current token, or the next one if content or
+   * code precedes it. A delimiter preceded by content or code starts in the same state as the content, except for the
+   * literal flags, since on restart the content is empty.
+   */
+  private void pushToken( int stuffStart, int stuffState, ManTemplateTokenType beginType,
+                          ManTemplateTokenType tokenType, int tokenStart, int tokenEnd )
   {
-    _tokens.push( new Token( tokenType, _index, tokenType.getToken() ) );
-    _index = index;
+    int tokenState = (stuffState & ~(STRING_FLAG | CHAR_LITERAL_FLAG)) |
+                     (_isParsingString ? STRING_FLAG : 0) |
+                     (_isParsingCharLiteral ? CHAR_LITERAL_FLAG : 0);
+    if( pushStuff( stuffStart, stuffState, beginType, tokenStart ) )
+    {
+      _nextType = tokenType;
+      _nextStart = tokenStart;
+      _nextEnd = tokenEnd;
+      _nextState = tokenState;
+    }
+    else
+    {
+      setToken( tokenType, tokenStart, tokenEnd, tokenState );
+    }
+    _top = tokenType;
+    _index = tokenEnd;
   }
 
   private boolean isInCode()
@@ -332,20 +410,6 @@ public class ManTemplateLexer extends LexerBase
 
   private boolean isTop( ManTemplateTokenType tokenType )
   {
-    return !_tokens.isEmpty() && _tokens.peek()._type == tokenType;
-  }
-
-  private class Token
-  {
-    ManTemplateTokenType _type;
-    int _offset;
-    String _value;
-
-    Token( ManTemplateTokenType type, int offset, String value )
-    {
-      _type = type;
-      _offset = offset;
-      _value = value;
-    }
+    return _top == tokenType;
   }
 }
@@ -24,7 +24,7 @@ import com.intellij.lang.java.parser.JavaParser;
 import com.intellij.lang.java.parser.StatementParser;
 import com.intellij.psi.JavaTokenType;
 import com.intellij.psi.impl.source.tree.JavaElementType;
-import java.util.List;
+import manifold.ij.template.OffsetTable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -35,10 +35,10 @@ class MyStatementParser extends StatementParser
 {
   private JavaParser _javaParser;
   private final ManTemplateJavaParser _manParser;
-  private List<Integer> _exprOffsets;
-  private final List<Integer> _directiveOffsets;
+  private OffsetTable _exprOffsets;
+  private final OffsetTable _directiveOffsets;
 
-  MyStatementParser( @NotNull final JavaParser javaParser, ManTemplateJavaParser manParser, List<Integer> exprOffsets, List<Integer> directiveOffsets )
+  MyStatementParser( @NotNull final JavaParser javaParser, ManTemplateJavaParser manParser, OffsetTable exprOffsets, OffsetTable directiveOffsets )
   {
     super( javaParser );
     _javaParser = javaParser;
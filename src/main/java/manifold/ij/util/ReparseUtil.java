@@ -41,6 +41,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import manifold.ij.core.ManProject;
+import manifold.ij.extensions.PreprocessorSymbolIndex;
 import manifold.util.concurrent.ConcurrentHashSet;
 import org.jetbrains.annotations.NotNull;
 
@@ -167,6 +168,49 @@ public class ReparseUtil
     }
   }
 
+  /**
+   * Reparse the Java files under {@code dir} referencing any of {@code symbols} in a preprocessor condition, regardless
+   * of whether they were recently opened. Falls back to reparsing recent files while indexes are not ready.
+   */
+  public void reparseJavaFilesReferencing( @NotNull Project project, @NotNull VirtualFile dir,
+                                           @NotNull Set<String> symbols )
+  {
+    if( symbols.isEmpty() )
+    {
+      return;
+    }
+
+    ManProject manProject = ManProject.manProjectFrom( project );
+    if( manProject == null || !manProject.isPreprocessorEnabledInAnyModules() )
+    {
+      // manifold-preprocessor is not used in this project, no need to reparse
+      return;
+    }
+
+    ApplicationManager.getApplication().invokeLater(
+      () -> {
+        if( project.isDisposed() )
+        {
+          return;
+        }
+
+        Set<VirtualFile> files = ApplicationManager.getApplication().runReadAction(
+          (Computable<Set<VirtualFile>>)() -> PreprocessorSymbolIndex.findReferencingFiles( project, dir, symbols ) );
+        if( files == null )
+        {
+          reparseRecentJavaFiles( project );
+          return;
+        }
+
+        // reparsing module-info.java causes infinite reset
+        files.removeIf( vf -> vf.getName().toLowerCase().endsWith( "module-info.java" ) );
+        if( !files.isEmpty() )
+        {
+          FileContentUtil.reparseFiles( project, files, false );
+        }
+      }, ModalityState.nonModal(), project.getDisposed() );
+  }
+
   public void reparseFile( @NotNull Project project, @NotNull VirtualFile file )
   {
     if( isReparsing( project ) || isReparsing( file ) )
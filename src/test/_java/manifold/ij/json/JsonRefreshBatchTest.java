@@ -0,0 +1,106 @@
+package manifold.ij.json;
+
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.PlatformTestUtil;
+import java.util.function.BooleanSupplier;
+import manifold.ij.AbstractManifoldCodeInsightTest;
+import manifold.ij.core.ManProject;
+import manifold.ij.extensions.FileModificationManager;
+
+/**
+ * Exercises refresh batching with a non-zero window, tests otherwise dispatch each change immediately.
+ */
+public class JsonRefreshBatchTest extends AbstractManifoldCodeInsightTest
+{
+  private static final String BATCH_WINDOW_KEY = "manifold.refresh.batch.window.ms";
+  private static final long TIMEOUT_MS = 10_000;
+
+  public void testChangesWithinWindowCoalesce() throws Exception
+  {
+    FileModificationManager fmm = ManProject.manProjectFrom( getProject() ).getFileModificationManager();
+    VirtualFile file = myFixture.copyFileToProject( "json/sample/Junk.json" );
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+
+    Registry.get( BATCH_WINDOW_KEY ).setValue( 200, getTestRootDisposable() );
+    long batches = fmm.getBatchCount();
+    long events = fmm.getEventCount();
+    long dispatched = fmm.getDispatchedCount();
+    String text = VfsUtil.loadText( file );
+    for( int i = 0; i < 3; i++ )
+    {
+      String content = text + "\n".repeat( i + 1 );
+      WriteAction.run( () -> VfsUtil.saveText( file, content ) );
+    }
+    waitUntil( () -> fmm.getBatchCount() > batches );
+
+    assertEquals( batches + 1, fmm.getBatchCount() );
+    assertEquals( events + 3, fmm.getEventCount() );
+    // three modifications of one file coalesce into one
+    assertEquals( dispatched + 1, fmm.getDispatchedCount() );
+  }
+
+  public void testRenameDispatchesPendingChangesFirst() throws Exception
+  {
+    FileModificationManager fmm = ManProject.manProjectFrom( getProject() ).getFileModificationManager();
+    VirtualFile file = myFixture.copyFileToProject( "json/sample/Junk.json" );
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+
+    // long enough for the batch to stay pending throughout the test
+    Registry.get( BATCH_WINDOW_KEY ).setValue( 60_000, getTestRootDisposable() );
+    long batches = fmm.getBatchCount();
+    long events = fmm.getEventCount();
+    long dispatched = fmm.getDispatchedCount();
+    String text = VfsUtil.loadText( file ) + "\n";
+    WriteAction.run( () -> VfsUtil.saveText( file, text ) );
+    waitUntil( () -> fmm.getEventCount() > events );
+    assertEquals( dispatched, fmm.getDispatchedCount() );
+
+    WriteAction.run( () -> file.rename( this, "Junk2.json" ) );
+
+    // the pending modification is dispatched ahead of the rename's deletion, not with the batch
+    assertEquals( dispatched + 1, fmm.getDispatchedCount() );
+    assertEquals( batches, fmm.getBatchCount() );
+  }
+
+  public void testRenameWhileBatchIsPostedDispatchesPendingChangesFirst() throws Exception
+  {
+    FileModificationManager fmm = ManProject.manProjectFrom( getProject() ).getFileModificationManager();
+    VirtualFile file = myFixture.copyFileToProject( "json/sample/Junk.json" );
+    PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+
+    Registry.get( BATCH_WINDOW_KEY ).setValue( 50, getTestRootDisposable() );
+    long batches = fmm.getBatchCount();
+    long events = fmm.getEventCount();
+    long dispatched = fmm.getDispatchedCount();
+    String text = VfsUtil.loadText( file ) + "\n";
+    WriteAction.run( () -> VfsUtil.saveText( file, text ) );
+    waitUntil( () -> fmm.getEventCount() > events );
+
+    // the window elapses and the batch is posted, but cannot run while the event queue is not pumped
+    Thread.sleep( 500 );
+    assertEquals( dispatched, fmm.getDispatchedCount() );
+
+    WriteAction.run( () -> file.rename( this, "Junk2.json" ) );
+
+    // the pending modification is dispatched ahead of the rename's deletion, not by the posted batch
+    assertEquals( dispatched + 1, fmm.getDispatchedCount() );
+    assertEquals( batches, fmm.getBatchCount() );
+  }
+
+  private static void waitUntil( BooleanSupplier condition ) throws InterruptedException
+  {
+    long start = System.currentTimeMillis();
+    while( !condition.getAsBoolean() )
+    {
+      if( System.currentTimeMillis() - start > TIMEOUT_MS )
+      {
+        fail( "Timed out waiting for refresh" );
+      }
+      PlatformTestUtil.dispatchAllInvocationEventsInIdeEventQueue();
+      Thread.sleep( 20 );
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package manifold.ij.template;
+
+import com.intellij.psi.tree.IElementType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import manifold.ij.template.psi.ManTemplateLexer;
+import manifold.ij.template.psi.ManTemplateTokenType;
+
+public class ManTemplateLexerTest extends TestCase
+{
+  private static final String[] PARTS = {
+    "hello ", "<html>", "\n", "${", "}", "<%=", "<%", "%>", "<%@", "<%--", "--%>", "\"", "'", "\\", "\\$", "\\<",
+    "x", "name", " + ", "if( a ) {", "}", "\"%>\"", "'}'", "$", "<", "%", "-", ">"
+  };
+
+  public void testContentLevelStateIsInitial()
+  {
+    List<Token> tokens = lex( "a ${x} b <% int i = 0; %> c <%-- note --%> d", 0 );
+    for( Token token: tokens )
+    {
+      if( token._type == ManTemplateTokenType.CONTENT )
+      {
+        assertEquals( "content at " + token._start, 0, token._state );
+      }
+    }
+  }
+
+  public void testTokensCoverBuffer()
+  {
+    Random random = new Random( 42 );
+    for( int i = 0; i < 2000; i++ )
+    {
+      String text = makeTemplate( random );
+      int offset = 0;
+      for( Token token: lex( text, 0 ) )
+      {
+        assertEquals( text, offset, token._start );
+        assertTrue( text, token._end > token._start );
+        offset = token._end;
+      }
+      assertEquals( text, text.length(), offset );
+    }
+  }
+
+  public void testRestartReproducesStream()
+  {
+    Random random = new Random( 7 );
+    for( int i = 0; i < 2000; i++ )
+    {
+      String text = makeTemplate( random );
+      List<Token> tokens = lex( text, 0 );
+      for( int t = 0; t < tokens.size(); t++ )
+      {
+        Token token = tokens.get( t );
+        List<Token> restarted = lex( text, token._start, token._state );
+        assertEquals( text + " @" + token._start, tokens.subList( t, tokens.size() ), restarted );
+      }
+    }
+  }
+
+  private static String makeTemplate( Random random )
+  {
+    StringBuilder sb = new StringBuilder();
+    int count = random.nextInt( 30 );
+    for( int i = 0; i < count; i++ )
+    {
+      sb.append( PARTS[random.nextInt( PARTS.length )] );
+    }
+    return sb.toString();
+  }
+
+  private static List<Token> lex( String text, int start )
+  {
+    return lex( text, start, 0 );
+  }
+
+  private static List<Token> lex( String text, int start, int state )
+  {
+    ManTemplateLexer lexer = new ManTemplateLexer();
+    lexer.start( text, start, text.length(), state );
+    List<Token> tokens = new ArrayList<>();
+    for( IElementType type; (type = lexer.getTokenType()) != null; lexer.advance() )
+    {
+      tokens.add( new Token( type, lexer.getTokenStart(), lexer.getTokenEnd(), lexer.getState() ) );
+    }
+    return tokens;
+  }
+
+  private static class Token
+  {
+    private final IElementType _type;
+    private final int _start;
+    private final int _end;
+    private final int _state;
+
+    private Token( IElementType type, int start, int end, int state )
+    {
+      _type = type;
+      _start = start;
+      _end = end;
+      _state = state;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+      if( !(o instanceof Token) )
+      {
+        return false;
+      }
+      Token token = (Token)o;
+      return _type == token._type && _start == token._start && _end == token._end && _state == token._state;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (_type.hashCode() * 31 + _start) * 31 + _end;
+    }
+
+    @Override
+    public String toString()
+    {
+      return _type + "[" + _start + "," + _end + "):" + _state;
+    }
+  }
+}